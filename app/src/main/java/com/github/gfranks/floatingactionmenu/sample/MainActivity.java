@@ -3,7 +3,6 @@ package com.github.gfranks.floatingactionmenu.sample;
 import android.content.Intent;
 import android.content.res.ColorStateList;
 import android.graphics.Color;
-import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Handler;
 import android.support.design.widget.CoordinatorLayout;
@@ -11,7 +10,6 @@ import android.support.design.widget.FloatingActionButton;
 import android.support.design.widget.Snackbar;
 import android.support.v4.app.ActivityOptionsCompat;
 import android.support.v4.content.ContextCompat;
-import android.support.v4.graphics.drawable.DrawableCompat;
 import android.support.v4.util.Pair;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
@@ -24,6 +22,7 @@ import android.widget.CompoundButton;
 import android.widget.Spinner;
 
 import com.github.gfranks.floatingactionmenu.GFFloatingActionMenu;
+import com.github.gfranks.floatingactionmenu.GFTintedIconCache;
 
 public class MainActivity extends AppCompatActivity implements View.OnClickListener, AdapterView.OnItemSelectedListener, CompoundButton.OnCheckedChangeListener {
 
@@ -150,9 +149,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         FloatingActionButton actionButton = new FloatingActionButton(this);
         actionButton.setBackgroundTintList(ColorStateList.valueOf(ContextCompat.getColor(this, R.color.colorAccent)));
         actionButton.setRippleColor(ContextCompat.getColor(this, R.color.colorAccentDark));
-        Drawable drawable = DrawableCompat.wrap(ContextCompat.getDrawable(this, R.drawable.ic_plus));
-        DrawableCompat.setTint(drawable, Color.WHITE);
-        actionButton.setImageDrawable(drawable);
+        actionButton.setImageDrawable(GFTintedIconCache.get(this, R.drawable.ic_plus, Color.WHITE));
         return actionButton;
     }
 }
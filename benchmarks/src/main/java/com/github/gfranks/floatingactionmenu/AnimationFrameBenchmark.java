@@ -0,0 +1,143 @@
+package com.github.gfranks.floatingactionmenu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of stepping an expand animation. The menu's animators are android.animation
+ * objects, so this steps the same interpolators (overshoot for translation, decelerate for alpha)
+ * over the translations produced by {@link MenuLayoutEngine}, one value per animated property.
+ * {@link #springFrame()} does the same for the spring backend through {@link MenuSpring}, and
+ * {@link #engineExpandFrame()} and {@link #staggeredEngineExpandFrame()} for the single items
+ * animator through {@link MenuAnimationEngine}, the latter with half the duration spread over the
+ * item start times.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnimationFrameBenchmark {
+
+    private static final int ANIMATION_DURATION = 300;
+    private static final float FRAME_INTERVAL = 1000f / 60f;
+    private static final float OVERSHOOT_TENSION = 2f;
+
+    @Param({"1", "10", "100", "500"})
+    public int itemCount;
+
+    @Param({"0", "4"})
+    public int expandDirection;
+
+    private MenuLayoutEngine mEngine;
+    private float[] mTranslationX;
+    private float[] mTranslationY;
+    private float[] mAlpha;
+    private float mPlayTime;
+    private MenuSpring mSpring;
+    private MenuAnimationEngine mAnimationEngine;
+    private MenuAnimationEngine mStaggeredAnimationEngine;
+
+    @Setup
+    public void setUp() {
+        mEngine = MenuLayoutBenchmark.createEngine(itemCount, expandDirection);
+        mEngine.measure();
+        mEngine.layout(0, 0, mEngine.getMeasuredWidth(), mEngine.getMeasuredHeight(),
+                MenuLayoutBenchmark.BUTTON_SIZE, MenuLayoutBenchmark.BUTTON_SIZE, 0);
+        mTranslationX = new float[itemCount];
+        mTranslationY = new float[itemCount];
+        mAlpha = new float[itemCount];
+        mSpring = new MenuSpring();
+        mSpring.setItemCount(itemCount + 1);
+        mAnimationEngine = createAnimationEngine(0f);
+        mStaggeredAnimationEngine = createAnimationEngine(0.5f);
+    }
+
+    private MenuAnimationEngine createAnimationEngine(float stagger) {
+        MenuAnimationEngine engine = new MenuAnimationEngine();
+        engine.setStagger(stagger);
+        engine.setItemCount(itemCount);
+        float[] collapsedTranslations = mEngine.getCollapsedTranslations();
+        for (int i = 0; i < itemCount; i++) {
+            engine.setCollapsedTranslation(i, collapsedTranslations[i * MenuLayoutEngine.TRANSLATION_STRIDE],
+                    collapsedTranslations[i * MenuLayoutEngine.TRANSLATION_STRIDE + 1]);
+        }
+        return engine;
+    }
+
+    @Benchmark
+    public float[] expandFrame() {
+        float fraction = nextFraction();
+        float translationFraction = overshoot(fraction);
+        float alphaFraction = decelerate(fraction);
+
+        float[] collapsedTranslations = mEngine.getCollapsedTranslations();
+        for (int i = 0; i < itemCount; i++) {
+            float collapsedX = collapsedTranslations[i * MenuLayoutEngine.TRANSLATION_STRIDE];
+            float collapsedY = collapsedTranslations[i * MenuLayoutEngine.TRANSLATION_STRIDE + 1];
+            mTranslationX[i] = collapsedX + translationFraction * -collapsedX;
+            mTranslationY[i] = collapsedY + translationFraction * -collapsedY;
+            mAlpha[i] = alphaFraction;
+        }
+        return mAlpha;
+    }
+
+    @Benchmark
+    public float engineExpandFrame() {
+        mAnimationEngine.computeFrame(nextFraction(), true);
+        return mAnimationEngine.getAlpha(itemCount - 1);
+    }
+
+    @Benchmark
+    public float staggeredEngineExpandFrame() {
+        mStaggeredAnimationEngine.computeFrame(nextFraction(), true);
+        return mStaggeredAnimationEngine.getAlpha(itemCount - 1);
+    }
+
+    @Benchmark
+    public float[] springFrame() {
+        // Toggle whenever the springs settle, so every invocation measures a moving frame
+        if (!mSpring.isRunning()) {
+            mSpring.setTarget(1f - mSpring.getTarget());
+        }
+        mSpring.step(FRAME_INTERVAL / 1000f);
+
+        float[] collapsedTranslations = mEngine.getCollapsedTranslations();
+        for (int i = 0; i < itemCount; i++) {
+            float progress = mSpring.getPosition(i + 1);
+            mTranslationX[i] = collapsedTranslations[i * MenuLayoutEngine.TRANSLATION_STRIDE] * (1f - progress);
+            mTranslationY[i] = collapsedTranslations[i * MenuLayoutEngine.TRANSLATION_STRIDE + 1] * (1f - progress);
+            mAlpha[i] = Math.max(0f, Math.min(1f, progress));
+        }
+        return mAlpha;
+    }
+
+    private float nextFraction() {
+        mPlayTime += FRAME_INTERVAL;
+        if (mPlayTime > ANIMATION_DURATION) {
+            mPlayTime = 0f;
+        }
+        return mPlayTime / ANIMATION_DURATION;
+    }
+
+    private static float overshoot(float t) {
+        t -= 1.0f;
+        return t * t * ((OVERSHOOT_TENSION + 1) * t + OVERSHOOT_TENSION) + 1.0f;
+    }
+
+    private static float decelerate(float t) {
+        return 1.0f - (1.0f - t) * (1.0f - t);
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.gfranks.floatingactionmenu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure and layout passes of {@link MenuLayoutEngine} for every expand direction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MenuLayoutBenchmark {
+
+    // Normal and mini FloatingActionButton sizes at xxhdpi, including the compat shadow padding
+    static final int BUTTON_SIZE = 186;
+    static final int MINI_BUTTON_SIZE = 138;
+    static final int LABEL_WIDTH = 240;
+    static final int LABEL_HEIGHT = 60;
+    static final int BUTTON_SPACING = 45;
+    static final int LABELS_MARGIN = 24;
+
+    @Param({"1", "10", "100", "500"})
+    public int itemCount;
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7"})
+    public int expandDirection;
+
+    private MenuLayoutEngine mEngine;
+
+    @Setup
+    public void setUp() {
+        mEngine = createEngine(itemCount, expandDirection);
+        mEngine.measure();
+    }
+
+    @Benchmark
+    public int measure() {
+        mEngine.measure();
+        return mEngine.getMeasuredWidth() + mEngine.getMeasuredHeight();
+    }
+
+    @Benchmark
+    public int[] layout() {
+        mEngine.layout(0, 0, mEngine.getMeasuredWidth(), mEngine.getMeasuredHeight(), BUTTON_SIZE, BUTTON_SIZE, 0);
+        return mEngine.getChildBounds();
+    }
+
+    @Benchmark
+    public int[] measureAndLayout() {
+        mEngine.measure();
+        mEngine.layout(0, 0, mEngine.getMeasuredWidth(), mEngine.getMeasuredHeight(), BUTTON_SIZE, BUTTON_SIZE, 0);
+        return mEngine.getChildBounds();
+    }
+
+    /**
+     * Builds an engine holding {@code itemCount} action buttons followed by the menu button, the
+     * same child order GFFloatingActionMenu uses. Every other button is mini and carries a label.
+     */
+    static MenuLayoutEngine createEngine(int itemCount, int expandDirection) {
+        int count = itemCount + 1;
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        int[] flags = new int[count];
+        int[] labelWidths = new int[count];
+        int[] labelHeights = new int[count];
+
+        for (int i = 0; i < itemCount; i++) {
+            boolean mini = i % 2 == 1;
+            widths[i] = mini ? MINI_BUTTON_SIZE : BUTTON_SIZE;
+            heights[i] = widths[i];
+            if (!mini) {
+                flags[i] = MenuLayoutEngine.FLAG_HAS_LABEL;
+                labelWidths[i] = LABEL_WIDTH;
+                labelHeights[i] = LABEL_HEIGHT;
+            }
+        }
+        widths[itemCount] = BUTTON_SIZE;
+        heights[itemCount] = BUTTON_SIZE;
+        flags[itemCount] = MenuLayoutEngine.FLAG_MENU_BUTTON;
+
+        MenuLayoutEngine engine = new MenuLayoutEngine();
+        engine.setExpandDirection(expandDirection);
+        engine.setLabelsPosition(MenuLayoutEngine.LABELS_LEFT);
+        engine.setButtonSpacing(BUTTON_SPACING);
+        engine.setLabelsMargin(LABELS_MARGIN);
+        engine.setItems(count, widths, heights, flags, labelWidths, labelHeights);
+        return engine;
+    }
+}
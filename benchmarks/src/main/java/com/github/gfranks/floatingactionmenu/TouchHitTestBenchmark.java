@@ -0,0 +1,125 @@
+package com.github.gfranks.floatingactionmenu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ACTION_DOWN hit-testing against the touch areas GFFloatingActionMenu registers for labeled
+ * items. {@link #actionDown()} replays the first-match list scan TouchDelegateGroup used to do
+ * and {@link #actionDownIndexed()} goes through the {@link TouchTargetIndex} it uses now. Arc
+ * directions have no labels, so their child bounds are used as areas to exercise the grid lookup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TouchHitTestBenchmark {
+
+    private static final int POINT_COUNT = 1024;
+
+    @Param({"1", "10", "100", "500"})
+    public int itemCount;
+
+    @Param({"0", "4"})
+    public int expandDirection;
+
+    private int[] mTouchAreas;
+    private int mTouchAreaCount;
+    private TouchTargetIndex mTouchTargetIndex = new TouchTargetIndex();
+    private int[] mPointsX = new int[POINT_COUNT];
+    private int[] mPointsY = new int[POINT_COUNT];
+    private int mNextPoint;
+
+    @Setup
+    public void setUp() {
+        MenuLayoutEngine engine = MenuLayoutBenchmark.createEngine(itemCount, expandDirection);
+        engine.measure();
+        engine.layout(0, 0, engine.getMeasuredWidth(), engine.getMeasuredHeight(),
+                MenuLayoutBenchmark.BUTTON_SIZE, MenuLayoutBenchmark.BUTTON_SIZE, 0);
+
+        int[] childBounds = engine.getChildBounds();
+        int[] labelBounds = engine.getLabelBounds();
+        int halfSpacing = MenuLayoutBenchmark.BUTTON_SPACING / 2;
+        mTouchAreas = new int[itemCount * MenuLayoutEngine.BOUNDS_STRIDE];
+        mTouchAreaCount = 0;
+        // Same order and extents onLayout registers its TouchDelegates with
+        boolean arc = expandDirection >= MenuLayoutEngine.EXPAND_ARC_LEFT_UP;
+        for (int i = itemCount - 1; i >= 0; i--) {
+            if (i % 2 == 1 && !arc) {
+                continue;
+            }
+            int bounds = i * MenuLayoutEngine.BOUNDS_STRIDE;
+            int area = mTouchAreaCount * MenuLayoutEngine.BOUNDS_STRIDE;
+            if (arc) {
+                System.arraycopy(childBounds, bounds, mTouchAreas, area, MenuLayoutEngine.BOUNDS_STRIDE);
+            } else {
+                mTouchAreas[area] = Math.min(childBounds[bounds], labelBounds[bounds]);
+                mTouchAreas[area + 1] = childBounds[bounds + 1] - halfSpacing;
+                mTouchAreas[area + 2] = Math.max(childBounds[bounds + 2], labelBounds[bounds + 2]);
+                mTouchAreas[area + 3] = childBounds[bounds + 3] + halfSpacing;
+            }
+            mTouchTargetIndex.add(mTouchAreas[area], mTouchAreas[area + 1], mTouchAreas[area + 2], mTouchAreas[area + 3], i);
+            mTouchAreaCount++;
+        }
+        mTouchTargetIndex.build();
+
+        Random random = new Random(42);
+        for (int i = 0; i < POINT_COUNT; i++) {
+            mPointsX[i] = random.nextInt(Math.max(1, engine.getMeasuredWidth()));
+            mPointsY[i] = random.nextInt(Math.max(1, engine.getMeasuredHeight()));
+        }
+    }
+
+    @Benchmark
+    public int actionDown() {
+        int point = nextPoint();
+        int x = mPointsX[point];
+        int y = mPointsY[point];
+
+        for (int i = 0; i < mTouchAreaCount; i++) {
+            int area = i * MenuLayoutEngine.BOUNDS_STRIDE;
+            if (x >= mTouchAreas[area] && x < mTouchAreas[area + 2]
+                    && y >= mTouchAreas[area + 1] && y < mTouchAreas[area + 3]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public int actionDownIndexed() {
+        int point = nextPoint();
+        return mTouchTargetIndex.find(mPointsX[point], mPointsY[point]);
+    }
+
+    @Benchmark
+    public int rebuild() {
+        mTouchTargetIndex.clear();
+        for (int i = 0; i < mTouchAreaCount; i++) {
+            int area = i * MenuLayoutEngine.BOUNDS_STRIDE;
+            mTouchTargetIndex.add(mTouchAreas[area], mTouchAreas[area + 1], mTouchAreas[area + 2], mTouchAreas[area + 3], i);
+        }
+        mTouchTargetIndex.build();
+        return mTouchTargetIndex.size();
+    }
+
+    private int nextPoint() {
+        int point = mNextPoint;
+        mNextPoint = (point + 1) & (POINT_COUNT - 1);
+        return point;
+    }
+}
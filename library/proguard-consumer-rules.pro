@@ -0,0 +1,12 @@
+# Rules applied to apps that shrink code depending on this library.
+
+# CoordinatorLayout instantiates the menu's default behavior reflectively, from the
+# @DefaultBehavior annotation or a layout_behavior attribute
+-keepattributes *Annotation*
+-keep class com.github.gfranks.floatingactionmenu.GFFloatingActionMenu$Behavior {
+    public <init>();
+    public <init>(android.content.Context, android.util.AttributeSet);
+}
+
+# Menu animations use android.util.Property objects rather than property names, so no
+# accessors have to be kept for them
@@ -0,0 +1,233 @@
+package com.github.gfranks.floatingactionmenu;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Build;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.github.gfranks.floatingactionmenu.test.R;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cost of inflating a labeled menu while its labels and animators are deferred, against the same
+ * menu once they are materialized by the first expand or by {@link GFFloatingActionMenu#prewarmWhenIdle()}.
+ * The eager case creates them before the first measure, the way every menu was inflated before
+ * labels were deferred. Every run inflates, measures and lays out a new menu on the main thread. Results are logged
+ * under {@value #TAG} and written to {@value #REPORT_NAME} in the app's external files directory:
+ * <pre>
+ * ./gradlew :library:connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.github.gfranks.floatingactionmenu.InflationBenchmark
+ * adb pull /sdcard/Android/data/com.github.gfranks.floatingactionmenu.test/files/inflation.txt benchmarks/reports/
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+public class InflationBenchmark {
+
+    private static final String TAG = "InflationBenchmark";
+    private static final String REPORT_NAME = "inflation.txt";
+    private static final int WARMUP_RUNS = 10;
+    private static final int MEASURED_RUNS = 50;
+    private static final int OPTION_COUNT = 12;
+
+    private static final StringBuilder sReport = new StringBuilder();
+
+    private Instrumentation mInstrumentation;
+    private Context mContext;
+    private FrameLayout mParent;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mContext = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(),
+                android.support.v7.appcompat.R.style.Theme_AppCompat_Light);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mParent = new FrameLayout(mContext);
+            }
+        });
+    }
+
+    @Test
+    public void eagerLabels() {
+        Result result = measure(new Run() {
+            @Override
+            public GFFloatingActionMenu run() {
+                GFFloatingActionMenu menu = inflateUnmeasured();
+                menu.prewarm();
+                measureAndLayout(menu);
+                return menu;
+            }
+        });
+
+        assertEquals(OPTION_COUNT * 2 + 1, result.mMenu.getChildCount());
+        assertTrue(result.mMenu.getAnimatorCount() > 0);
+        report("eager", result);
+    }
+
+    @Test
+    public void deferredLabels() {
+        Result result = measure(new Run() {
+            @Override
+            public GFFloatingActionMenu run() {
+                return inflate();
+            }
+        });
+
+        assertEquals(OPTION_COUNT, result.mMenu.getMenuOptionCount());
+        // Only the options and the menu button, no label views and no animators yet
+        assertEquals(OPTION_COUNT + 1, result.mMenu.getChildCount());
+        assertEquals(0, result.mMenu.getAnimatorCount());
+        report("deferred", result);
+    }
+
+    @Test
+    public void labelsMaterializedByFirstExpand() {
+        Result result = measure(new Run() {
+            @Override
+            public GFFloatingActionMenu run() {
+                GFFloatingActionMenu menu = inflate();
+                menu.expand();
+                measureAndLayout(menu);
+                menu.collapseImmediately();
+                return menu;
+            }
+        });
+
+        assertEquals(OPTION_COUNT * 2 + 1, result.mMenu.getChildCount());
+        assertTrue(result.mMenu.getAnimatorCount() > 0);
+        report("firstExpand", result);
+    }
+
+    @Test
+    public void labelsMaterializedWhenIdle() {
+        final GFFloatingActionMenu[] menu = new GFFloatingActionMenu[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                menu[0] = inflate();
+                menu[0].prewarmWhenIdle();
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+
+        Result result = new Result();
+        result.mMenu = menu[0];
+        result.mViewCount = countViews(menu[0]);
+        result.mAnimatorCount = menu[0].getAnimatorCount();
+
+        assertEquals(OPTION_COUNT * 2 + 1, menu[0].getChildCount());
+        assertTrue(result.mAnimatorCount > 0);
+        report("prewarmWhenIdle", result);
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        Context context = InstrumentationRegistry.getTargetContext();
+        File file = new File(context.getExternalFilesDir(null), REPORT_NAME);
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(String.format(Locale.US, "# %s %s, API %d, %d labeled options, %d warmup and %d measured runs%n",
+                    Build.MANUFACTURER, Build.MODEL, Build.VERSION.SDK_INT, OPTION_COUNT, WARMUP_RUNS, MEASURED_RUNS));
+            writer.write(String.format(Locale.US, "%-16s %12s %12s %8s %10s%n", "Case", "Median (us)", "Min (us)", "Views", "Animators"));
+            writer.write(sReport.toString());
+        } finally {
+            writer.close();
+        }
+        Log.i(TAG, "Report written to " + file);
+    }
+
+    private GFFloatingActionMenu inflate() {
+        GFFloatingActionMenu menu = inflateUnmeasured();
+        measureAndLayout(menu);
+        return menu;
+    }
+
+    private GFFloatingActionMenu inflateUnmeasured() {
+        return (GFFloatingActionMenu) LayoutInflater.from(mContext)
+                .inflate(R.layout.benchmark_labeled_menu, mParent, false);
+    }
+
+    private static void measureAndLayout(View view) {
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        view.measure(spec, spec);
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+    private Result measure(final Run run) {
+        final Result result = new Result();
+        final long[] times = new long[MEASURED_RUNS];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < WARMUP_RUNS; i++) {
+                    run.run();
+                }
+                for (int i = 0; i < MEASURED_RUNS; i++) {
+                    long start = System.nanoTime();
+                    result.mMenu = run.run();
+                    times[i] = System.nanoTime() - start;
+                }
+                result.mViewCount = countViews(result.mMenu);
+                result.mAnimatorCount = result.mMenu.getAnimatorCount();
+            }
+        });
+
+        Arrays.sort(times);
+        result.mMedianNanos = times[MEASURED_RUNS / 2];
+        result.mMinNanos = times[0];
+        return result;
+    }
+
+    private static int countViews(View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                count += countViews(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+
+    private static void report(String name, Result result) {
+        String line = String.format(Locale.US, "%-16s %12s %12s %8d %10d%n", name,
+                result.mMedianNanos < 0 ? "-" : String.format(Locale.US, "%.1f", result.mMedianNanos / 1000f),
+                result.mMinNanos < 0 ? "-" : String.format(Locale.US, "%.1f", result.mMinNanos / 1000f),
+                result.mViewCount, result.mAnimatorCount);
+        Log.i(TAG, line.trim());
+        sReport.append(line);
+    }
+
+    private interface Run {
+        GFFloatingActionMenu run();
+    }
+
+    private static class Result {
+
+        private GFFloatingActionMenu mMenu;
+        private long mMedianNanos = -1;
+        private long mMinNanos = -1;
+        private int mViewCount;
+        private int mAnimatorCount;
+    }
+}
@@ -37,7 +37,9 @@ public class GFFloatingActionButton extends FloatingActionButton {
     public void setTitle(String title) {
         mTitle = title;
         TextView label = getLabelView();
-        if (label != null) {
+        if (getParent() instanceof GFFloatingActionMenu) {
+            ((GFFloatingActionMenu) getParent()).updateLabel(this, label, title);
+        } else if (label != null) {
             label.setText(title);
         }
     }
@@ -1,7 +1,8 @@
 package com.github.gfranks.floatingactionmenu;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.AnimatorSet;
-import android.animation.ArgbEvaluator;
 import android.animation.ObjectAnimator;
 import android.animation.ValueAnimator;
 import android.content.Context;
@@ -10,31 +11,46 @@ import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
+import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.IntDef;
+import android.support.annotation.MenuRes;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
 import android.support.design.widget.AppBarLayout;
 import android.support.design.widget.BottomSheetBehavior;
 import android.support.design.widget.CoordinatorLayout;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v4.content.ContextCompat;
-import android.support.v4.graphics.drawable.DrawableCompat;
 import android.support.v4.view.ViewCompat;
+import android.text.Layout;
+import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.Property;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.Choreographer;
 import android.view.ContextThemeWrapper;
 import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.TouchDelegate;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.WindowManager;
 import android.view.animation.DecelerateInterpolator;
 import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
 import android.view.animation.OvershootInterpolator;
 import android.widget.TextView;
 
@@ -48,7 +64,7 @@ public class GFFloatingActionMenu extends ViewGroup {
 
     private static Interpolator sExpandInterpolator = new OvershootInterpolator();
     private static Interpolator sCollapseInterpolator = new DecelerateInterpolator(3f);
-    private static Interpolator sAlphaExpandInterpolator = new DecelerateInterpolator();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
 
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({EXPAND_UP, EXPAND_DOWN, EXPAND_LEFT, EXPAND_RIGHT, EXPAND_ARC_LEFT_UP, EXPAND_ARC_LEFT_DOWN, EXPAND_ARC_RIGHT_UP, EXPAND_ARC_RIGHT_DOWN})
@@ -68,7 +84,67 @@ public class GFFloatingActionMenu extends ViewGroup {
     public static final int LABELS_LEFT = 0;
     public static final int LABELS_RIGHT = 1;
 
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({LABEL_MODE_VIEW, LABEL_MODE_DRAWN})
+    public @interface LabelMode {}
+    public static final int LABEL_MODE_VIEW = 0;
+    public static final int LABEL_MODE_DRAWN = 1;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({LAYERS_ALWAYS, LAYERS_DURING_ANIMATION, LAYERS_NEVER})
+    public @interface LayerPolicy {}
+    public static final int LAYERS_ALWAYS = 0;
+    public static final int LAYERS_DURING_ANIMATION = 1;
+    public static final int LAYERS_NEVER = 2;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ANIMATION_BACKEND_ANIMATOR_SET, ANIMATION_BACKEND_VIEW_PROPERTY, ANIMATION_BACKEND_SPRING})
+    public @interface AnimationBackend {}
+    public static final int ANIMATION_BACKEND_ANIMATOR_SET = 0;
+    public static final int ANIMATION_BACKEND_VIEW_PROPERTY = 1;
+    public static final int ANIMATION_BACKEND_SPRING = 2;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({STATE_COLLAPSED, STATE_EXPANDING, STATE_EXPANDED, STATE_COLLAPSING, STATE_HIDING, STATE_HIDDEN})
+    public @interface MenuState {}
+    public static final int STATE_COLLAPSED = 0;
+    public static final int STATE_EXPANDING = 1;
+    public static final int STATE_EXPANDED = 2;
+    public static final int STATE_COLLAPSING = 3;
+    public static final int STATE_HIDING = 4;
+    public static final int STATE_HIDDEN = 5;
+
     private static final int ANIMATION_DURATION = 300;
+    private static final long PREFETCH_SLICE_NANOS = 2000000L;
+
+    private static final AnimationClock CHOREOGRAPHER_CLOCK = new AnimationClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void postFrameCallback(Choreographer.FrameCallback callback) {
+            Choreographer.getInstance().postFrameCallback(callback);
+        }
+
+        @Override
+        public void removeFrameCallback(Choreographer.FrameCallback callback) {
+            Choreographer.getInstance().removeFrameCallback(callback);
+        }
+    };
+
+    private static final Property<RotatingDrawable, Float> DRAWABLE_ROTATION = new Property<RotatingDrawable, Float>(Float.class, "rotation") {
+        @Override
+        public Float get(RotatingDrawable drawable) {
+            return drawable.getRotation();
+        }
+
+        @Override
+        public void set(RotatingDrawable drawable, Float rotation) {
+            drawable.setRotation(rotation);
+        }
+    };
 
     private int mMenuRippleColor;
     private int mMenuBackgroundTint;
@@ -80,31 +156,272 @@ public class GFFloatingActionMenu extends ViewGroup {
     private float mExpandedIconRotation = 90f + 45f;
     private boolean mDimWhenExpanded;
     private int mExpandedDimColor = Color.parseColor("#77000000");
-    private int mCollapsedDimColor;
+    private float mDimFraction;
     private int mLabelsStyle;
+    private Context mLabelsContext;
+    private TextPaint mLabelsPaint;
+    private int mLabelsMode = LABEL_MODE_VIEW;
+    private boolean mLabelsMaterialized;
+    private boolean mPrefetching;
+    private int mPrefetchGeneration;
+    private int mPrefetchPosition;
+    private int mPrefetchEnd;
+    private final SparseArray<ViewHolder> mPrefetchedHolders = new SparseArray<>();
+    private int mLabelsTextColor;
+    private Drawable mLabelsBackground;
+    private final Rect mLabelsPadding = new Rect();
     private int mLabelsPosition;
-    private boolean mExpanded;
+    private int mState = STATE_COLLAPSED;
+    private int mLayerPolicy = LAYERS_DURING_ANIMATION;
+    private int mAnimationBackend = ANIMATION_BACKEND_ANIMATOR_SET;
 
     private int mButtonSpacing;
     private int mLabelsMargin;
 
     private AnimatorSet mExpandAnimation = new AnimatorSet().setDuration(ANIMATION_DURATION);
     private AnimatorSet mCollapseAnimation = new AnimatorSet().setDuration(ANIMATION_DURATION);
+    private boolean mAnimationsDirty = true;
+    private ObjectAnimator mExpandIconAnimation;
+    private ObjectAnimator mCollapseIconAnimation;
+    private ValueAnimator mExpandDimAnimation;
+    private ValueAnimator mCollapseDimAnimation;
+    private ValueAnimator mExpandItemsAnimation;
+    private ValueAnimator mCollapseItemsAnimation;
+    private final MenuAnimationEngine mAnimationEngine = new MenuAnimationEngine();
     private FloatingActionButton mMenuButton;
     private RotatingDrawable mRotatingDrawable;
-    private int mMaxButtonWidth;
-    private int mMaxButtonHeight;
     private int mButtonsCount;
 
+    private final MenuLayoutEngine mLayoutEngine = new MenuLayoutEngine();
+    private int mItemsCount;
+    private int[] mItemWidths = new int[0];
+    private int[] mItemHeights = new int[0];
+    private int[] mItemFlags = new int[0];
+    private int[] mLabelWidths = new int[0];
+    private int[] mLabelHeights = new int[0];
+    private int mLastWidthMeasureSpec;
+    private int mLastHeightMeasureSpec;
+    private int mContentGeneration;
+    private int mMeasuredGeneration = -1;
+    private boolean mInterceptRequestLayout;
+    private boolean mLayoutRequestIntercepted;
+
+    private Adapter mAdapter;
+    private final RecycledViewPool mRecycledViewPool = new RecycledViewPool();
+    private int mFirstAdapterPosition;
+    private int mAdapterItemExtent;
+    private boolean mAdapterDataChanged;
+    private int mTouchSlop;
+    private float mScrollStart;
+    private boolean mIsScrollingItems;
+
+    private final MenuSpring mSpring = new MenuSpring();
+    private boolean mSpringFrameScheduled;
+    private long mSpringFrameTimeNanos;
+
     private TouchDelegateGroup mTouchDelegateGroup;
 
     private OnFloatingActionsMenuUpdateListener mListener;
+    private OnMenuMetricsListener mMetricsListener;
+    private OnMenuItemClickListener mMenuItemClickListener;
+    private int mMenuRes;
+    private AnimationClock mClock = CHOREOGRAPHER_CLOCK;
+    private int mMeasurePassCount;
+    private int mLayoutPassCount;
+    private boolean mMetricsFrameScheduled;
+    private long mMetricsStartNanos;
+    private long mMetricsLastFrameNanos;
+    private long mMetricsFrameBudgetNanos;
+    private long mMetricsFirstFrameNanos;
+    private int mMetricsFrameCount;
+    private int mMetricsJankyFrameCount;
+    private int mMetricsLayerCount;
+
+    private final ValueAnimator.AnimatorUpdateListener mDimUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animator) {
+            float fraction = animator.getAnimatedFraction();
+            mDimFraction = animator == mExpandDimAnimation ? fraction : 1f - fraction;
+            invalidateScrim();
+        }
+
+    };
+
+    private final ValueAnimator.AnimatorUpdateListener mLabelsUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animator) {
+            // Options only invalidate their own display lists, drawn labels need the menu redrawn
+            if (mLabelsMode == LABEL_MODE_DRAWN) {
+                invalidate();
+            }
+        }
+
+    };
+
+    private final ValueAnimator.AnimatorUpdateListener mItemsUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animator) {
+            mAnimationEngine.computeFrame(animator.getAnimatedFraction(), animator == mExpandItemsAnimation);
+            for (int i = 0, count = Math.min(getChildCount(), mAnimationEngine.getItemCount()); i < count; i++) {
+                View child = getChildAt(i);
+                ViewGroup.LayoutParams params = child.getLayoutParams();
+                if (params instanceof LayoutParams && ((LayoutParams) params).mHasAnimationsTarget) {
+                    child.setTranslationX(mAnimationEngine.getTranslationX(i));
+                    child.setTranslationY(mAnimationEngine.getTranslationY(i));
+                    child.setAlpha(mAnimationEngine.getAlpha(i));
+                }
+            }
+        }
+
+    };
+
+    private final Animator.AnimatorListener mLayerListener = new AnimatorListenerAdapter() {
+
+        @Override
+        public void onAnimationStart(Animator animation) {
+            if (mLayerPolicy == LAYERS_DURING_ANIMATION) {
+                setItemLayerType(LAYER_TYPE_HARDWARE);
+            }
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            // Called for cancels too, keep the layers when the opposite animation took over
+            if (mLayerPolicy == LAYERS_DURING_ANIMATION && !mExpandAnimation.isStarted() && !mCollapseAnimation.isStarted()) {
+                setItemLayerType(LAYER_TYPE_NONE);
+            }
+        }
+
+    };
+
+    private final Animator.AnimatorListener mStateListener = new AnimatorListenerAdapter() {
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            // A set cancelled by the opposite one ends after the state already moved on
+            if (animation == mExpandAnimation ? mState == STATE_EXPANDING
+                    : animation == mCollapseAnimation && (mState == STATE_COLLAPSING || mState == STATE_HIDING)) {
+                finishTransition();
+            }
+        }
+
+    };
+
+    private final Choreographer.FrameCallback mSpringFrameCallback = new Choreographer.FrameCallback() {
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            float seconds = mSpringFrameTimeNanos == 0 ? 1f / 60f : (frameTimeNanos - mSpringFrameTimeNanos) / 1e9f;
+            mSpringFrameTimeNanos = frameTimeNanos;
+            boolean running = mSpring.step(seconds);
+            applySpringProgress();
+
+            if (running) {
+                mClock.postFrameCallback(this);
+            } else {
+                mSpringFrameScheduled = false;
+                if (mLayerPolicy == LAYERS_DURING_ANIMATION) {
+                    setItemLayerType(LAYER_TYPE_NONE);
+                }
+                finishTransition();
+            }
+        }
+
+    };
+
+    private final Choreographer.FrameCallback mMetricsFrameCallback = new Choreographer.FrameCallback() {
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mMetricsFrameCount == 0) {
+                mMetricsFirstFrameNanos = mClock.nanoTime() - mMetricsStartNanos;
+                mMetricsLayerCount = countItemLayers();
+            } else if (frameTimeNanos - mMetricsLastFrameNanos > mMetricsFrameBudgetNanos * 3 / 2) {
+                mMetricsJankyFrameCount++;
+            }
+            mMetricsLastFrameNanos = frameTimeNanos;
+            mMetricsFrameCount++;
+
+            if (isAnimating()) {
+                mClock.postFrameCallback(this);
+            } else {
+                mMetricsFrameScheduled = false;
+                if (mMetricsListener != null) {
+                    mMetricsListener.onAnimationEnd(isExpanded(), mMetricsFrameCount, mMetricsJankyFrameCount,
+                            mMetricsFirstFrameNanos, getAnimatorCount(), mMetricsLayerCount);
+                }
+            }
+        }
+
+    };
+
+    private final MessageQueue.IdleHandler mPrefetchIdleHandler = new MessageQueue.IdleHandler() {
+
+        @Override
+        public boolean queueIdle() {
+            // Keep every slice well within a frame, the idle handler is called again until done
+            long deadline = mClock.nanoTime() + PREFETCH_SLICE_NANOS;
+            do {
+                if (!prefetchNext()) {
+                    mPrefetching = false;
+                    return false;
+                }
+            } while (mClock.nanoTime() < deadline);
+            return true;
+        }
+
+    };
+
+    private final OnClickListener mDimClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            if (isExpanded()) {
+                collapse();
+            }
+        }
+    };
 
     public interface OnFloatingActionsMenuUpdateListener {
         void onMenuExpanded();
         void onMenuCollapsed();
     }
 
+    public interface OnMenuItemClickListener {
+        void onMenuItemClick(int itemId);
+    }
+
+    /**
+     * Reports what the menu costs. Every callback only carries primitives, so nothing is allocated
+     * once the listener is set. Durations are in nanoseconds.
+     */
+    public interface OnMenuMetricsListener {
+        void onMeasure(long durationNanos);
+        void onLayout(long durationNanos);
+
+        /**
+         * @param expanded         whether this was an expand or a collapse animation
+         * @param frameCount       frames drawn while animating
+         * @param jankyFrameCount  frames that took longer than one and a half refresh intervals
+         * @param firstFrameNanos  time from expand() or collapse() to the first animated frame
+         * @param animatorCount    animators in the expand and collapse sets
+         * @param layerCount       options and labels rendering through a hardware layer
+         */
+        void onAnimationEnd(boolean expanded, int frameCount, int jankyFrameCount, long firstFrameNanos,
+                            int animatorCount, int layerCount);
+    }
+
+    /**
+     * Time source and frame scheduler behind the spring frames, animation metrics and timings.
+     */
+    interface AnimationClock {
+        long nanoTime();
+        void postFrameCallback(Choreographer.FrameCallback callback);
+        void removeFrameCallback(Choreographer.FrameCallback callback);
+    }
+
     public GFFloatingActionMenu(Context context) {
         this(context, null);
     }
@@ -124,10 +441,13 @@ public class GFFloatingActionMenu extends ViewGroup {
         setClipToPadding(false);
         mButtonSpacing = (int) (15 * getResources().getDisplayMetrics().density);
         mLabelsMargin = (int) (8 * getResources().getDisplayMetrics().density);
+        mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
 
         mTouchDelegateGroup = new TouchDelegateGroup(this);
         setTouchDelegate(mTouchDelegateGroup);
 
+        createAnimations();
+
         TypedArray attr = context.obtainStyledAttributes(attributeSet, R.styleable.GFFloatingActionMenu, 0, 0);
         mMenuRippleColor = attr.getColor(R.styleable.GFFloatingActionMenu_fam_rippleColor, Color.DKGRAY);
         mMenuBackgroundTint = attr.getColor(R.styleable.GFFloatingActionMenu_fam_backgroundTint, Color.GRAY);
@@ -141,102 +461,63 @@ public class GFFloatingActionMenu extends ViewGroup {
         setDimWhenExpandedColor(attr.getColor(R.styleable.GFFloatingActionMenu_fam_dimWhenExpandedColor, mExpandedDimColor));
         mLabelsStyle = attr.getResourceId(R.styleable.GFFloatingActionMenu_fam_labelStyle, 0);
         mLabelsPosition = attr.getInt(R.styleable.GFFloatingActionMenu_fam_labelPosition, LABELS_LEFT);
+        mLabelsMode = attr.getInt(R.styleable.GFFloatingActionMenu_fam_labelMode, mLabelsMode);
+        mLayerPolicy = attr.getInt(R.styleable.GFFloatingActionMenu_fam_layerPolicy, mLayerPolicy);
+        mAnimationBackend = attr.getInt(R.styleable.GFFloatingActionMenu_fam_animationBackend, mAnimationBackend);
+        mAnimationEngine.setStagger(attr.getFloat(R.styleable.GFFloatingActionMenu_fam_animationStagger, 0f));
+        mMenuRes = attr.getResourceId(R.styleable.GFFloatingActionMenu_fam_menu, 0);
         attr.recycle();
 
-        mMenuIcon = ContextCompat.getDrawable(getContext(), menuIcon);
+        mLayoutEngine.setButtonSpacing(mButtonSpacing);
+        mLayoutEngine.setLabelsMargin(mLabelsMargin);
+        mLayoutEngine.setExpandDirection(mExpandDirection);
+        mLayoutEngine.setLabelsPosition(mLabelsPosition);
+
+        mMenuIcon = GFTintedIconCache.get(getContext(), menuIcon, mMenuIconTint);
 
         createAddButton(context);
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        measureChildren(widthMeasureSpec, heightMeasureSpec);
-
-        int width = 0;
-        int height = 0;
-
-        mMaxButtonWidth = 0;
-        mMaxButtonHeight = 0;
-        int maxLabelWidth = 0;
-
-        for (int i = 0; i < mButtonsCount; i++) {
-            View child = getChildAt(i);
-
-            if (child.getVisibility() == GONE) {
-                continue;
-            }
-
-            switch (mExpandDirection) {
-                case EXPAND_UP:
-                case EXPAND_DOWN:
-                    mMaxButtonWidth = Math.max(mMaxButtonWidth, child.getMeasuredWidth());
-                    height += child.getMeasuredHeight();
-                    break;
-                case EXPAND_LEFT:
-                case EXPAND_RIGHT:
-                    width += child.getMeasuredWidth();
-                    mMaxButtonHeight = Math.max(mMaxButtonHeight, child.getMeasuredHeight());
-                    break;
-                case EXPAND_ARC_LEFT_UP:
-                case EXPAND_ARC_LEFT_DOWN:
-                case EXPAND_ARC_RIGHT_UP:
-                case EXPAND_ARC_RIGHT_DOWN:
-                    mMaxButtonWidth = Math.max(mMaxButtonWidth, child.getMeasuredWidth());
-                    height += child.getMeasuredHeight();
-                    width += child.getMeasuredWidth();
-                    mMaxButtonHeight = Math.max(mMaxButtonHeight, child.getMeasuredHeight());
-                    break;
-            }
-
-            if (expandsVertically()) {
-                TextView label = (TextView) child.getTag(R.id.fab_label);
-                if (label != null) {
-                    maxLabelWidth = Math.max(maxLabelWidth, label.getMeasuredWidth());
-                }
+        long start = mMetricsListener != null ? mClock.nanoTime() : 0;
+        if (mMeasuredGeneration == mContentGeneration && widthMeasureSpec == mLastWidthMeasureSpec
+                && heightMeasureSpec == mLastHeightMeasureSpec && !(mDimWhenExpanded && !usesParentScrim())) {
+            // Nothing changed since the last pass, the children keep their measurements too
+            setMeasuredDimension(getMeasuredWidthAndState(), getMeasuredHeightAndState());
+            if (mMetricsListener != null) {
+                mMetricsListener.onMeasure(mClock.nanoTime() - start);
             }
+            return;
         }
 
-        if (mDimWhenExpanded) {
-            setMeasuredDimension(((View) getParent()).getMeasuredWidth(), ((View) getParent()).getMeasuredHeight());
-            return;
+        mMeasurePassCount++;
+        mLastWidthMeasureSpec = widthMeasureSpec;
+        mLastHeightMeasureSpec = heightMeasureSpec;
+        if (mAdapter != null) {
+            bindAdapterItems(widthMeasureSpec, heightMeasureSpec);
         }
+        measureChildren(widthMeasureSpec, heightMeasureSpec);
+        collectChildSizes();
+        mLayoutEngine.measure();
 
-        if (expandsHorizontally()) {
-            height = mMaxButtonHeight;
-        } else if (expandsVertically()) {
-            width = mMaxButtonWidth + (maxLabelWidth > 0 ? maxLabelWidth + mLabelsMargin : 0);
+        if (mDimWhenExpanded && !usesParentScrim()) {
+            setMeasuredDimension(((View) getParent()).getMeasuredWidth(), ((View) getParent()).getMeasuredHeight());
         } else {
-            height = mMaxButtonHeight;
-            width = mMaxButtonWidth;
+            setMeasuredDimension(mLayoutEngine.getMeasuredWidth(), mLayoutEngine.getMeasuredHeight());
         }
+        // Binding adapter items above bumps the generation, that is already measured
+        mMeasuredGeneration = mContentGeneration;
 
-        switch (mExpandDirection) {
-            case EXPAND_UP:
-            case EXPAND_DOWN:
-                height += mButtonSpacing * (mButtonsCount - 1);
-                height = adjustForOvershoot(height);
-                break;
-            case EXPAND_LEFT:
-            case EXPAND_RIGHT:
-                width += mButtonSpacing * (mButtonsCount - 1);
-                width = adjustForOvershoot(width);
-                break;
-            case EXPAND_ARC_LEFT_UP:
-            case EXPAND_ARC_LEFT_DOWN:
-            case EXPAND_ARC_RIGHT_UP:
-            case EXPAND_ARC_RIGHT_DOWN:
-                height += mButtonSpacing * mButtonsCount * 2;
-                height = adjustForOvershoot(height);
-                width += mButtonSpacing * mButtonsCount * 2;
-                width = adjustForOvershoot(width);
-                break;
+        if (mMetricsListener != null) {
+            mMetricsListener.onMeasure(mClock.nanoTime() - start);
         }
-
-        setMeasuredDimension(width, height);
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        long start = mMetricsListener != null ? mClock.nanoTime() : 0;
+        mLayoutPassCount++;
         t += getPaddingTop();
         b -= getPaddingBottom();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
@@ -247,234 +528,136 @@ public class GFFloatingActionMenu extends ViewGroup {
             r -= getPaddingRight();
         }
 
-        switch (mExpandDirection) {
-            case EXPAND_UP:
-            case EXPAND_DOWN: {
-                boolean expandUp = mExpandDirection == EXPAND_UP;
-
-                if (changed) {
-                    mTouchDelegateGroup.clearTouchDelegates();
-                }
-
-                int addButtonY;
-                if (expandUp) {
-                    addButtonY = getAdjustedYCoordinateForAppBarLayoutAnchor(b - t - mMenuButton.getMeasuredHeight());
-                } else {
-                    addButtonY = getAdjustedYCoordinateForAppBarLayoutAnchor(t);
-                }
-                // Ensure mMenuButton is centered on the line where the buttons should be
-                int buttonsHorizontalCenter = mLabelsPosition == LABELS_LEFT
-                        ? r - l - mMaxButtonWidth / 2
-                        : mMaxButtonWidth / 2;
-
-                int addButtonLeft = (buttonsHorizontalCenter - mMenuButton.getMeasuredWidth() / 2);
-                mMenuButton.layout(addButtonLeft, addButtonY, addButtonLeft + mMenuButton.getMeasuredWidth(), addButtonY + mMenuButton.getMeasuredHeight());
-
-                int labelsOffset = mMaxButtonWidth / 2 + mLabelsMargin;
-                int labelsXNearButton = mLabelsPosition == LABELS_LEFT
-                        ? buttonsHorizontalCenter - labelsOffset
-                        : buttonsHorizontalCenter + labelsOffset;
-
-                int nextY = expandUp ?
-                        addButtonY - mButtonSpacing :
-                        addButtonY + mMenuButton.getMeasuredHeight() + mButtonSpacing;
-
-                for (int i = mButtonsCount - 1; i >= 0; i--) {
-                    final View child = getChildAt(i);
-
-                    if (child == mMenuButton || child.getVisibility() == GONE) continue;
-
-                    int childX = (buttonsHorizontalCenter - child.getMeasuredWidth() / 2);
-                    int childY;
-                    if (expandUp) {
-                        childY = nextY - child.getMeasuredHeight();
-                    } else {
-                        childY = nextY;
-                    }
-                    child.layout(childX, childY, childX + child.getMeasuredWidth(), childY + child.getMeasuredHeight());
-
-                    float collapsedTranslation = addButtonY - childY;
-                    float expandedTranslation = 0f;
-
-                    child.setTranslationY(mExpanded ? expandedTranslation : collapsedTranslation);
-                    child.setAlpha(mExpanded ? 1f : 0f);
-
-                    LayoutParams params = (LayoutParams) child.getLayoutParams();
-                    params.mCollapseYDir.setFloatValues(expandedTranslation, collapsedTranslation);
-                    params.mExpandYDir.setFloatValues(collapsedTranslation, expandedTranslation);
-                    params.setAnimationsTarget(child);
-
-                    View label = (View) child.getTag(R.id.fab_label);
-                    if (label != null) {
-                        int labelXAwayFromButton = mLabelsPosition == LABELS_LEFT
-                                ? labelsXNearButton - label.getMeasuredWidth()
-                                : labelsXNearButton + label.getMeasuredWidth();
-
-                        int labelLeft;
-                        int labelRight;
-                        if (mLabelsPosition == LABELS_LEFT) {
-                            labelLeft = labelXAwayFromButton;
-                            labelRight = labelsXNearButton;
-                        } else {
-                            labelLeft = labelsXNearButton;
-                            labelRight = labelXAwayFromButton;
-                        }
-
-                        int labelTop = childY + (child.getMeasuredHeight() - label.getMeasuredHeight()) / 2;
-                        label.layout(labelLeft, labelTop, labelRight, labelTop + label.getMeasuredHeight());
+        if (mItemsCount != mButtonsCount) {
+            // Children changed without a measure pass, so refresh what the engine works from
+            collectChildSizes();
+            mLayoutEngine.measure();
+        }
 
-                        Rect touchArea = new Rect(
-                                Math.min(childX, labelLeft),
-                                childY - mButtonSpacing / 2,
-                                Math.max(childX + child.getMeasuredWidth(), labelRight),
-                                childY + child.getMeasuredHeight() + mButtonSpacing / 2);
-                        mTouchDelegateGroup.addTouchDelegate(new TouchDelegate(touchArea, child));
+        mLayoutEngine.layout(l, t, r, b, mMenuButton.getMeasuredWidth(), mMenuButton.getMeasuredHeight(),
+                getAppBarLayoutAnchorOffset());
 
-                        label.setTranslationY(mExpanded ? expandedTranslation : collapsedTranslation);
-                        label.setAlpha(mExpanded ? 1f : 0f);
+        int[] menuButtonBounds = mLayoutEngine.getMenuButtonBounds();
+        mMenuButton.layout(menuButtonBounds[0], menuButtonBounds[1], menuButtonBounds[2], menuButtonBounds[3]);
 
-                        LayoutParams labelParams = (LayoutParams) label.getLayoutParams();
-                        labelParams.mCollapseYDir.setFloatValues(expandedTranslation, collapsedTranslation);
-                        labelParams.mExpandYDir.setFloatValues(collapsedTranslation, expandedTranslation);
-                        labelParams.setAnimationsTarget(label);
-                    }
+        int[] childBounds = mLayoutEngine.getChildBounds();
+        int[] labelBounds = mLayoutEngine.getLabelBounds();
+        float[] collapsedTranslations = mLayoutEngine.getCollapsedTranslations();
+        for (int i = mButtonsCount - 1; i >= 0; i--) {
+            if (mLayoutEngine.isSkipped(i)) continue;
 
-                    nextY = expandUp ?
-                            childY - mButtonSpacing :
-                            childY + child.getMeasuredHeight() + mButtonSpacing;
-                }
-                break;
-            }
-            case EXPAND_LEFT:
-            case EXPAND_RIGHT: {
-                boolean expandLeft = mExpandDirection == EXPAND_LEFT;
+            final View child = getChildAt(i);
+            int bounds = i * MenuLayoutEngine.BOUNDS_STRIDE;
+            float collapsedXTranslation = collapsedTranslations[i * MenuLayoutEngine.TRANSLATION_STRIDE];
+            float collapsedYTranslation = collapsedTranslations[i * MenuLayoutEngine.TRANSLATION_STRIDE + 1];
+            layoutItem(child, childBounds, bounds, collapsedXTranslation, collapsedYTranslation);
 
-                int addButtonX;
-                if (expandLeft) {
-                    addButtonX = r - l - mMenuButton.getMeasuredWidth();
+            if ((mItemFlags[i] & MenuLayoutEngine.FLAG_HAS_LABEL) != 0) {
+                View label = (View) child.getTag(R.id.fab_label);
+                if (label != null) {
+                    layoutItem(label, labelBounds, bounds, collapsedXTranslation, collapsedYTranslation);
                 } else {
-                    addButtonX = l;
+                    DrawnLabel drawnLabel = (DrawnLabel) child.getTag(R.id.fam_drawn_label);
+                    drawnLabel.mLeft = labelBounds[bounds];
+                    drawnLabel.mTop = labelBounds[bounds + 1];
+                    drawnLabel.mLaidOut = true;
                 }
-                // Ensure mMenuButton is centered on the line where the buttons should be
-                int addButtonTop = getAdjustedYCoordinateForAppBarLayoutAnchor(b - t - mMaxButtonHeight + (mMaxButtonHeight - mMenuButton.getMeasuredHeight()) / 2);
-                mMenuButton.layout(addButtonX, addButtonTop, addButtonX + mMenuButton.getMeasuredWidth(), addButtonTop + mMenuButton.getMeasuredHeight());
-
-                int nextX = expandLeft ?
-                        addButtonX - mButtonSpacing :
-                        addButtonX + mMenuButton.getMeasuredWidth() + mButtonSpacing;
-
-                for (int i = mButtonsCount - 1; i >= 0; i--) {
-                    final View child = getChildAt(i);
-
-                    if (child == mMenuButton || child.getVisibility() == GONE) continue;
+            }
+        }
 
-                    int childX;
-                    if (expandLeft) {
-                        childX = nextX - child.getMeasuredWidth();
-                    } else {
-                        childX = nextX;
-                    }
-                    int childY = addButtonTop + (mMenuButton.getMeasuredHeight() - child.getMeasuredHeight()) / 2;
-                    child.layout(childX, childY, childX + child.getMeasuredWidth(), childY + child.getMeasuredHeight());
+        updateTouchTargets();
 
-                    float collapsedTranslation = addButtonX - childX;
-                    float expandedTranslation = 0f;
+        if (mMetricsListener != null) {
+            mMetricsListener.onLayout(mClock.nanoTime() - start);
+        }
+    }
 
-                    child.setTranslationX(mExpanded ? expandedTranslation : collapsedTranslation);
-                    child.setAlpha(mExpanded ? 1f : 0f);
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if (mDimFraction > 0f && !usesParentScrim()) {
+            canvas.drawColor(getScrimColor());
+        }
+        super.dispatchDraw(canvas);
+        if (mLabelsMode == LABEL_MODE_DRAWN) {
+            drawLabels(canvas);
+        }
+    }
 
-                    LayoutParams params = (LayoutParams) child.getLayoutParams();
-                    params.mCollapseXDir.setFloatValues(expandedTranslation, collapsedTranslation);
-                    params.mExpandXDir.setFloatValues(collapsedTranslation, expandedTranslation);
-                    params.setAnimationsTarget(child);
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        return detectItemsScroll(event);
+    }
 
-                    nextX = expandLeft ?
-                            childX - mButtonSpacing :
-                            childX + child.getMeasuredWidth() + mButtonSpacing;
-                }
-                break;
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!mIsScrollingItems) {
+            // Drags starting on a label come through the touch delegate and never reach
+            // onInterceptTouchEvent. Check before super, the delegate moves the event
+            if (!detectItemsScroll(event)) {
+                return super.onTouchEvent(event);
             }
-            case EXPAND_ARC_LEFT_DOWN:
-            case EXPAND_ARC_LEFT_UP:
-            case EXPAND_ARC_RIGHT_UP:
-            case EXPAND_ARC_RIGHT_DOWN: {
-                boolean expandLeft = mExpandDirection == EXPAND_ARC_LEFT_UP || mExpandDirection == EXPAND_ARC_LEFT_DOWN;
-                boolean expandUp = mExpandDirection == EXPAND_ARC_LEFT_UP || mExpandDirection == EXPAND_ARC_RIGHT_UP;
 
-                int addButtonX;
-                if (expandLeft) {
-                    addButtonX = r - l - mMenuButton.getMeasuredWidth();
-                } else {
-                    addButtonX = l;
-                }
-                int addButtonY;
-                if (expandUp) {
-                    addButtonY = getAdjustedYCoordinateForAppBarLayoutAnchor(b - t - mMenuButton.getMeasuredHeight());
-                } else {
-                    addButtonY = getAdjustedYCoordinateForAppBarLayoutAnchor(t);
-                }
-                mMenuButton.layout(addButtonX, addButtonY, addButtonX + mMenuButton.getMeasuredWidth(), addButtonY + mMenuButton.getMeasuredHeight());
+            // Take the gesture from the option the delegate forwarded it to
+            MotionEvent cancel = MotionEvent.obtain(event);
+            cancel.setAction(MotionEvent.ACTION_CANCEL);
+            super.onTouchEvent(cancel);
+            cancel.recycle();
+            return true;
+        }
 
-                double eachAngle;
-                if (mButtonsCount == 1) {
-                    eachAngle = 0;
-                } else {
-                    int angle;
-                    if (expandLeft) {
-                        angle = 90;
-                    } else {
-                        angle = -90;
-                    }
-                    eachAngle = (double) angle / (mButtonsCount - 2);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_MOVE:
+                // Scroll by whole items, dragging towards the menu button moves the window forward
+                float coordinate = getScrollCoordinate(event);
+                int steps = (int) ((coordinate - mScrollStart) / Math.max(1, mAdapterItemExtent));
+                if (steps != 0) {
+                    mScrollStart += steps * mAdapterItemExtent;
+                    scrollToPosition(mFirstAdapterPosition + steps);
                 }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mIsScrollingItems = false;
+                break;
+        }
+        return true;
+    }
 
-                int leftPoint, topPoint, left, top;
-                for (int i = 0; i < mButtonsCount; i++) {
-                    final View child = getChildAt(i);
-
-                    if (child == mMenuButton || child.getVisibility() == GONE) continue;
-
-                    double totalAngleForChild = eachAngle * (i);
-                    leftPoint = (int) (((mMaxButtonWidth * mButtonsCount) * Math.cos(Math.toRadians(totalAngleForChild))) / 2);
-                    topPoint = (int) (((mMaxButtonHeight * mButtonsCount) * Math.sin(Math.toRadians(totalAngleForChild))) / 2);
-
-                    if (expandLeft) {
-                        left = addButtonX - leftPoint;
-                        if (expandUp) {
-                            top = addButtonY - topPoint;
-                        } else {
-                            top = addButtonY + topPoint;
-                        }
-                    } else {
-                        left = addButtonX + leftPoint;
-                        if (expandUp) {
-                            top = addButtonY + topPoint;
-                        } else {
-                            top = addButtonY - topPoint;
-                        }
-                    }
-
-                    child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
-
-                    float collapsedXTranslation = addButtonX - left;
-                    float collapsedYTranslation = addButtonY - top;
-                    float expandedXTranslation = 0f;
-                    float expandedYTranslation = 0f;
-
-                    child.setTranslationX(mExpanded ? expandedXTranslation : collapsedXTranslation);
-                    child.setTranslationY(mExpanded ? expandedYTranslation : collapsedYTranslation);
-                    child.setAlpha(mExpanded ? 1f : 0f);
+    private boolean detectItemsScroll(MotionEvent event) {
+        if (!canScrollAdapterItems()) {
+            return false;
+        }
 
-                    LayoutParams params = (LayoutParams) child.getLayoutParams();
-                    params.mCollapseXDir.setFloatValues(expandedXTranslation, collapsedXTranslation);
-                    params.mCollapseYDir.setFloatValues(expandedYTranslation, collapsedYTranslation);
-                    params.mExpandXDir.setFloatValues(collapsedXTranslation, expandedXTranslation);
-                    params.mExpandYDir.setFloatValues(collapsedYTranslation, expandedYTranslation);
-                    params.setAnimationsTarget(child);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mScrollStart = getScrollCoordinate(event);
+                mIsScrollingItems = false;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                float coordinate = getScrollCoordinate(event);
+                if (Math.abs(coordinate - mScrollStart) > mTouchSlop) {
+                    mScrollStart = coordinate;
+                    mIsScrollingItems = true;
                 }
                 break;
-            }
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mIsScrollingItems = false;
+                break;
+        }
+        return mIsScrollingItems;
+    }
+
+    @Override
+    public void requestLayout() {
+        if (mInterceptRequestLayout) {
+            mLayoutRequestIntercepted = true;
+            return;
         }
+
+        // Covers layout requests from options and labels as well as our own setters
+        mContentGeneration++;
+        super.requestLayout();
     }
 
     @Override
@@ -487,6 +670,52 @@ public class GFFloatingActionMenu extends ViewGroup {
         if (mLabelsStyle != 0) {
             createLabels();
         }
+
+        if (mMenuRes != 0) {
+            inflateMenu(mMenuRes);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        cancelPrefetch();
+        if (mMetricsFrameScheduled) {
+            mClock.removeFrameCallback(mMetricsFrameCallback);
+            mMetricsFrameScheduled = false;
+        }
+        if (mSpringFrameScheduled) {
+            mClock.removeFrameCallback(mSpringFrameCallback);
+            mSpringFrameScheduled = false;
+            mSpring.snapToTarget();
+            applySpringProgress();
+            if (mLayerPolicy == LAYERS_DURING_ANIMATION) {
+                setItemLayerType(LAYER_TYPE_NONE);
+            }
+            finishTransition();
+        }
+    }
+
+    @Override
+    public void onViewAdded(View child) {
+        super.onViewAdded(child);
+        mContentGeneration++;
+        prefetchLabelText(child);
+        if (child.getLayoutParams() instanceof LayoutParams) {
+            ((LayoutParams) child.getLayoutParams()).invalidateLayout();
+        }
+        if (mState == STATE_HIDDEN && child instanceof FloatingActionButton) {
+            // hide() only runs on transitions, so buttons added meanwhile start out hidden
+            child.setEnabled(false);
+            child.setVisibility(View.GONE);
+        }
+    }
+
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        mContentGeneration++;
     }
 
     @Override
@@ -500,7 +729,7 @@ public class GFFloatingActionMenu extends ViewGroup {
     public Parcelable onSaveInstanceState() {
         Parcelable superState = super.onSaveInstanceState();
         SavedState savedState = new SavedState(superState);
-        savedState.mExpanded = mExpanded;
+        savedState.mExpanded = isExpanded();
 
         return savedState;
     }
@@ -509,13 +738,14 @@ public class GFFloatingActionMenu extends ViewGroup {
     public void onRestoreInstanceState(Parcelable state) {
         if (state instanceof SavedState) {
             SavedState savedState = (SavedState) state;
-            mExpanded = savedState.mExpanded;
-            mTouchDelegateGroup.setEnabled(mExpanded);
-
-            if (mRotatingDrawable != null) {
-                mRotatingDrawable.setRotation(mExpanded ? mExpandedIconRotation : mCollapsedIconRotation);
+            mState = savedState.mExpanded ? STATE_EXPANDED : STATE_COLLAPSED;
+            mTouchDelegateGroup.setEnabled(savedState.mExpanded);
+            if (savedState.mExpanded) {
+                materializeLabels();
             }
 
+            setIconRotation(savedState.mExpanded ? mExpandedIconRotation : mCollapsedIconRotation);
+
             super.onRestoreInstanceState(savedState.getSuperState());
         } else {
             super.onRestoreInstanceState(state);
@@ -542,6 +772,81 @@ public class GFFloatingActionMenu extends ViewGroup {
         return super.checkLayoutParams(p);
     }
 
+    public Adapter getAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * Switches the menu to adapter mode. Only the items that fit in the space the menu is given
+     * are bound to views, the rest can be scrolled into view by dragging along the expand
+     * direction while expanded (or through {@link #scrollToPosition(int)}). Views leaving the
+     * window are recycled per view type. Options added directly are removed.
+     */
+    public void setAdapter(Adapter adapter) {
+        if (mAdapter != null) {
+            mAdapter.mMenu = null;
+        }
+
+        mInterceptRequestLayout = true;
+        try {
+            for (int i = mButtonsCount - 2; i >= 0; i--) {
+                if (mAdapter != null) {
+                    recycleViewHolderAt(i);
+                } else {
+                    removeButtonAt(i);
+                }
+            }
+        } finally {
+            mInterceptRequestLayout = false;
+            mLayoutRequestIntercepted = false;
+        }
+        cancelPrefetch();
+        mRecycledViewPool.clear();
+
+        mAdapter = adapter;
+        mFirstAdapterPosition = 0;
+        if (adapter != null) {
+            adapter.mMenu = this;
+        }
+        requestLayout();
+    }
+
+    /**
+     * Replaces the options with the items of a menu resource. Items are kept as a compact model and
+     * their buttons are only created, through an adapter, once the menu measures them and only as
+     * many as fit. Items support {@code android:id}, {@code android:icon}, {@code android:title},
+     * {@code fam_itemBackgroundTint} and {@code fam_itemIconTint}.
+     *
+     * @see #setOnMenuItemClickListener(OnMenuItemClickListener)
+     */
+    public void inflateMenu(@MenuRes int menuRes) {
+        mMenuRes = menuRes;
+        setAdapter(new MenuItemsAdapter(this, MenuItems.inflate(getContext(), menuRes)));
+    }
+
+    public void setOnMenuItemClickListener(OnMenuItemClickListener listener) {
+        mMenuItemClickListener = listener;
+    }
+
+    public void scrollToPosition(int position) {
+        if (mAdapter != null && position != mFirstAdapterPosition) {
+            mFirstAdapterPosition = Math.max(0, position);
+            requestLayout();
+        }
+    }
+
+    /**
+     * Opt-in performance metrics, pass null to stop collecting them.
+     */
+    public void setOnMenuMetricsListener(OnMenuMetricsListener listener) {
+        mMetricsListener = listener;
+        if (listener != null && mMetricsFrameBudgetNanos == 0) {
+            float refreshRate = ((WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE))
+                    .getDefaultDisplay().getRefreshRate();
+            mMetricsFrameBudgetNanos = (long) (1000000000L / Math.max(refreshRate, 1f));
+        }
+    }
+
     public void setOnFloatingActionsMenuUpdateListener(OnFloatingActionsMenuUpdateListener listener) {
         mListener = listener;
     }
@@ -555,7 +860,11 @@ public class GFFloatingActionMenu extends ViewGroup {
     }
 
     public void setExpandDirection(@ExpandDirection int expandDirection) {
+        if (mExpandDirection != expandDirection) {
+            mAnimationsDirty = true;
+        }
         mExpandDirection = expandDirection;
+        mLayoutEngine.setExpandDirection(expandDirection);
         requestLayout();
     }
 
@@ -565,6 +874,7 @@ public class GFFloatingActionMenu extends ViewGroup {
 
     public void setLabelPosition(@LabelPosition int labelPosition) {
         mLabelsPosition = labelPosition;
+        mLayoutEngine.setLabelsPosition(labelPosition);
         requestLayout();
     }
 
@@ -573,7 +883,11 @@ public class GFFloatingActionMenu extends ViewGroup {
     }
 
     public void setDimWhenExpanded(boolean dimWhenExpanded) {
+        if (mDimWhenExpanded != dimWhenExpanded) {
+            mAnimationsDirty = true;
+        }
         mDimWhenExpanded = dimWhenExpanded;
+        mDimFraction = dimWhenExpanded && isExpanded() ? 1f : 0f;
         if (dimWhenExpanded && getLayoutParams() instanceof CoordinatorLayout.LayoutParams && (((CoordinatorLayout.LayoutParams) getLayoutParams()).getAnchorId() != NO_ID)) {
             throw new IllegalStateException("Dimming when anchored to a view is not supported");
         }
@@ -586,55 +900,307 @@ public class GFFloatingActionMenu extends ViewGroup {
 
     public void setDimWhenExpandedColor(int dimWhenExpandedColor) {
         mExpandedDimColor = dimWhenExpandedColor;
-        mCollapsedDimColor = mExpandedDimColor & 0x00FFFFFF;
+        invalidateScrim();
     }
 
-    public int getMenuOptionCount() {
-        return mButtonsCount - 1;
+    @LayerPolicy
+    public int getLayerPolicy() {
+        return mLayerPolicy;
     }
 
-    public void setMenuIcon(@DrawableRes int drawableResId) {
-        setMenuIcon(ContextCompat.getDrawable(getContext(), drawableResId));
+    /**
+     * Controls when menu options and labels render through a hardware layer. Layers make the
+     * expand and collapse animations cheaper but each one holds an offscreen buffer, so by default
+     * they only exist while an animation runs.
+     */
+    public void setLayerPolicy(@LayerPolicy int layerPolicy) {
+        mLayerPolicy = layerPolicy;
+        boolean animating = mExpandAnimation.isStarted() || mCollapseAnimation.isStarted();
+        setItemLayerType(layerPolicy == LAYERS_ALWAYS || (layerPolicy == LAYERS_DURING_ANIMATION && animating)
+                ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE);
     }
 
-    public void setMenuIcon(Drawable drawable) {
-        mMenuButton.setImageDrawable(getMenuDrawable(drawable));
+    /**
+     * The parent draws the scrim when it is a CoordinatorLayout running our Behavior, which lets
+     * the menu keep its own compact bounds. Other parents need the menu to fill them and draw it.
+     */
+    private boolean usesParentScrim() {
+        ViewGroup.LayoutParams params = getLayoutParams();
+        return params instanceof CoordinatorLayout.LayoutParams
+                && ((CoordinatorLayout.LayoutParams) params).getBehavior() instanceof Behavior;
     }
 
-    public void setExpandedIconRotation(float expandedIconRotation) {
-        mExpandedIconRotation = expandedIconRotation;
-        RotatingDrawable drawable = (RotatingDrawable) mMenuButton.getDrawable();
-        mMenuButton.setImageDrawable(getMenuDrawable(drawable.getDrawable(0)));
+    float getScrimOpacity() {
+        return mDimWhenExpanded ? mDimFraction * Color.alpha(mExpandedDimColor) / 255f : 0f;
     }
 
-    public void setCollapsedIconRotation(float collapsedIconRotation) {
-        mCollapsedIconRotation = collapsedIconRotation;
-        RotatingDrawable drawable = (RotatingDrawable) mMenuButton.getDrawable();
-        mMenuButton.setImageDrawable(getMenuDrawable(drawable.getDrawable(0)));
+    private int getScrimColor() {
+        return ((int) (getScrimOpacity() * 255 + 0.5f) << 24) | (mExpandedDimColor & 0x00FFFFFF);
     }
 
-    public void setLabelsStyle(int labelsStyle) {
-        mLabelsStyle = labelsStyle;
+    private void invalidateScrim() {
+        if (usesParentScrim() && getParent() instanceof View) {
+            ((View) getParent()).invalidate();
+        } else {
+            invalidate();
+        }
+    }
+
+    @AnimationBackend
+    public int getAnimationBackend() {
+        return mAnimationBackend;
+    }
+
+    /**
+     * Selects what drives the options during expand and collapse. With
+     * {@link #ANIMATION_BACKEND_VIEW_PROPERTY} each option runs a listener-free
+     * {@link android.view.ViewPropertyAnimator} that sets its render node properties directly,
+     * without invalidating the menu or going through its update listener. The animators are
+     * stepped on the main thread like the other backends, so a busy main thread still stalls them. A
+     * ViewPropertyAnimator takes a single interpolator, so expanding options also fade in on the
+     * overshoot curve: alpha is clamped to 1 well before the motion ends, rather than following the
+     * decelerate curve of the other backends. Before Lollipop the animator sets are used either way.
+     * <p>
+     * {@link #ANIMATION_BACKEND_SPRING} moves the options, icon and dim with springs that keep
+     * their velocity, so toggling in flight reverses from where the menu is.
+     */
+    public void setAnimationBackend(@AnimationBackend int animationBackend) {
+        if (mAnimationBackend != animationBackend) {
+            mAnimationBackend = animationBackend;
+            mAnimationsDirty = true;
+            if (animationBackend == ANIMATION_BACKEND_SPRING) {
+                mSpring.setItemCount(getChildCount() + 1);
+                mSpring.setTarget(isExpanded() ? 1f : 0f);
+                mSpring.snapToTarget();
+            }
+        }
+    }
+
+    public float getAnimationStagger() {
+        return mAnimationEngine.getStagger();
+    }
+
+    /**
+     * Spreads the options' start times over {@code stagger}, a share of the animation from 0 to 1,
+     * by their distance from the menu button. The nearest option starts first when expanding and
+     * last when collapsing, and every option moves for the rest of the duration. The spring
+     * backend does not stagger.
+     */
+    public void setAnimationStagger(float stagger) {
+        mAnimationEngine.setStagger(stagger);
+    }
+
+    private boolean usesSpringAnimations() {
+        return mAnimationBackend == ANIMATION_BACKEND_SPRING;
+    }
+
+    private boolean usesViewPropertyAnimations() {
+        // Drawn labels are painted by the menu on the main thread and could not follow
+        return mAnimationBackend == ANIMATION_BACKEND_VIEW_PROPERTY && mLabelsMode != LABEL_MODE_DRAWN
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
+    @VisibleForTesting
+    void setAnimationClock(AnimationClock clock) {
+        mClock.removeFrameCallback(mSpringFrameCallback);
+        mClock.removeFrameCallback(mMetricsFrameCallback);
+        mClock = clock;
+        if (mSpringFrameScheduled) {
+            mClock.postFrameCallback(mSpringFrameCallback);
+        }
+        if (mMetricsFrameScheduled) {
+            mClock.postFrameCallback(mMetricsFrameCallback);
+        }
+    }
+
+    /**
+     * @return measure passes that measured the children, passes answered from the cache excluded
+     */
+    @VisibleForTesting
+    int getMeasurePassCount() {
+        return mMeasurePassCount;
+    }
+
+    @VisibleForTesting
+    int getLayoutPassCount() {
+        return mLayoutPassCount;
+    }
+
+    @VisibleForTesting
+    int getTouchTargetCount() {
+        return mTouchDelegateGroup.getTouchTargetCount();
+    }
+
+    public int getAnimatorCount() {
+        return mExpandAnimation.getChildAnimations().size() + mCollapseAnimation.getChildAnimations().size();
+    }
+
+    public int getMenuOptionCount() {
+        return mButtonsCount - 1;
+    }
+
+    public void setMenuIcon(@DrawableRes int drawableResId) {
+        setMenuIcon(ContextCompat.getDrawable(getContext(), drawableResId));
+    }
+
+    public void setMenuIcon(Drawable drawable) {
+        mMenuButton.setImageDrawable(getMenuDrawable(drawable));
+    }
+
+    public void setExpandedIconRotation(float expandedIconRotation) {
+        mExpandedIconRotation = expandedIconRotation;
+        updateIconAnimations();
+    }
+
+    public void setCollapsedIconRotation(float collapsedIconRotation) {
+        mCollapsedIconRotation = collapsedIconRotation;
+        updateIconAnimations();
+    }
+
+    @LabelMode
+    public int getLabelsMode() {
+        return mLabelsMode;
+    }
+
+    /**
+     * With {@link #LABEL_MODE_DRAWN} the menu draws the titles itself instead of adding a TextView
+     * per option, sharing one paint and background between them. Drawn labels follow their
+     * option's translation and alpha but have no elevation of their own.
+     */
+    public void setLabelsMode(@LabelMode int labelsMode) {
+        if (mLabelsMode != labelsMode) {
+            mLabelsMode = labelsMode;
+            mAnimationsDirty = true;
+            updateLabelsStyle();
+        }
+    }
+
+    /**
+     * Fills {@code outRect} with where the option's label currently is in this menu's coordinates,
+     * including the option's translation, for both label modes.
+     *
+     * @return false if the option has no label
+     */
+    public boolean getLabelBounds(View button, Rect outRect) {
+        View label = (View) button.getTag(R.id.fab_label);
+        if (label != null) {
+            outRect.set(label.getLeft(), label.getTop(), label.getRight(), label.getBottom());
+            outRect.offset((int) label.getTranslationX(), (int) label.getTranslationY());
+            return true;
+        }
+
+        DrawnLabel drawnLabel = (DrawnLabel) button.getTag(R.id.fam_drawn_label);
+        if (drawnLabel != null && drawnLabel.mLaidOut) {
+            outRect.set(drawnLabel.mLeft, drawnLabel.mTop, drawnLabel.mLeft + drawnLabel.mWidth, drawnLabel.mTop + drawnLabel.mHeight);
+            outRect.offset((int) button.getTranslationX(), (int) button.getTranslationY());
+            return true;
+        }
+        return false;
+    }
+
+    public void setLabelsStyle(int labelsStyle) {
+        mLabelsStyle = labelsStyle;
+        mLabelsContext = null;
+        mLabelsPaint = null;
+        mLabelsBackground = null;
+        prefetchLabelText();
         updateLabelsStyle();
     }
 
     public void addButton(FloatingActionButton button) {
+        assertNotInAdapterMode();
         addView(button, mButtonsCount - 1);
         mButtonsCount++;
 
         if (mLabelsStyle != 0) {
-            createLabels();
+            createLabel(button);
         }
     }
 
     public void addButton(FloatingActionButton button, int index) {
+        assertNotInAdapterMode();
         addView(button, index);
         mButtonsCount++;
         bringChildToFront(mMenuButton);
 
         if (mLabelsStyle != 0) {
-            createLabels();
+            createLabel(button);
+        }
+    }
+
+    /**
+     * Replaces the menu options with {@code buttons}, keyed by their view ids. Buttons that are
+     * already in the menu are kept (and only moved when their order changed), the rest are added
+     * or removed. Labels are created once for the whole batch and a single layout is requested.
+     */
+    public void setButtons(@NonNull List<? extends FloatingActionButton> buttons) {
+        assertNotInAdapterMode();
+        final int count = buttons.size();
+        SparseIntArray newPositions = new SparseIntArray(count);
+        for (int i = 0; i < count; i++) {
+            FloatingActionButton button = buttons.get(i);
+            if (button == mMenuButton) {
+                throw new IllegalStateException("You cannot add the menu button as an option");
+            } else if (button.getId() == NO_ID || newPositions.indexOfKey(button.getId()) >= 0) {
+                throw new IllegalArgumentException("Every button needs a unique id, found " + button.getId() + " at " + i);
+            }
+            newPositions.put(button.getId(), i);
+        }
+
+        mInterceptRequestLayout = true;
+        try {
+            // Drop buttons that are no longer part of the menu or were replaced by another instance
+            for (int i = mButtonsCount - 2; i >= 0; i--) {
+                View child = getChildAt(i);
+                int position = newPositions.get(child.getId(), -1);
+                if (position == -1 || buttons.get(position) != child) {
+                    removeButtonAt(i);
+                }
+            }
+
+            // The buttons that keep their relative order (longest increasing run of old positions)
+            // stay where they are, every other kept button is detached and re-attached in place
+            int keptCount = mButtonsCount - 1;
+            int[] oldPositions = new int[keptCount];
+            for (int i = 0; i < keptCount; i++) {
+                oldPositions[i] = newPositions.get(getChildAt(i).getId());
+            }
+            boolean[] stationary = findStationary(oldPositions);
+
+            List<View> detached = new ArrayList<>();
+            for (int i = keptCount - 1; i >= 0; i--) {
+                if (!stationary[i]) {
+                    detached.add(getChildAt(i));
+                    detachViewFromParent(i);
+                    mButtonsCount--;
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                FloatingActionButton button = buttons.get(i);
+                if (i < mButtonsCount - 1 && getChildAt(i) == button) {
+                    continue;
+                }
+
+                if (detached.remove(button)) {
+                    attachViewToParent(button, i, button.getLayoutParams());
+                    ((LayoutParams) button.getLayoutParams()).invalidateLayout();
+                } else {
+                    addView(button, i);
+                }
+                mButtonsCount++;
+            }
+
+            if (mLabelsStyle != 0) {
+                createLabels();
+            }
+        } finally {
+            mInterceptRequestLayout = false;
+            mLayoutRequestIntercepted = false;
         }
+
+        requestLayout();
+        invalidate();
     }
 
     public void removeButton(FloatingActionButton button) {
@@ -659,218 +1225,1174 @@ public class GFFloatingActionMenu extends ViewGroup {
         mButtonsCount--;
     }
 
+    private void assertNotInAdapterMode() {
+        if (mAdapter != null) {
+            throw new IllegalStateException("Menu options are managed by the adapter");
+        }
+    }
+
+    private void bindAdapterItems(int widthMeasureSpec, int heightMeasureSpec) {
+        measureChild(mMenuButton, widthMeasureSpec, heightMeasureSpec);
+        boolean vertical = mExpandDirection == EXPAND_UP || mExpandDirection == EXPAND_DOWN;
+        boolean horizontal = mExpandDirection == EXPAND_LEFT || mExpandDirection == EXPAND_RIGHT;
+
+        int available;
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+        if (vertical) {
+            available = heightMode == MeasureSpec.UNSPECIFIED ? Integer.MAX_VALUE : MeasureSpec.getSize(heightMeasureSpec);
+        } else if (horizontal) {
+            available = widthMode == MeasureSpec.UNSPECIFIED ? Integer.MAX_VALUE : MeasureSpec.getSize(widthMeasureSpec);
+        } else {
+            available = Math.min(
+                    widthMode == MeasureSpec.UNSPECIFIED ? Integer.MAX_VALUE : MeasureSpec.getSize(widthMeasureSpec),
+                    heightMode == MeasureSpec.UNSPECIFIED ? Integer.MAX_VALUE : MeasureSpec.getSize(heightMeasureSpec));
+        }
+
+        // Size the window with the largest item bound so far, the menu button until there is one
+        int menuButtonExtent = horizontal ? mMenuButton.getMeasuredWidth() : mMenuButton.getMeasuredHeight();
+        int itemExtent = 0;
+        for (int i = 0; i < mButtonsCount - 1; i++) {
+            View child = getChildAt(i);
+            itemExtent = Math.max(itemExtent, horizontal ? child.getMeasuredWidth() : child.getMeasuredHeight());
+        }
+        if (itemExtent == 0) {
+            itemExtent = menuButtonExtent;
+        }
+        mAdapterItemExtent = itemExtent + mButtonSpacing;
+
+        int itemCount = mAdapter.getItemCount();
+        int capacity = available == Integer.MAX_VALUE
+                ? itemCount
+                : Math.min(itemCount, mLayoutEngine.computeCapacity(available, itemExtent, menuButtonExtent));
+        mFirstAdapterPosition = Math.max(0, Math.min(mFirstAdapterPosition, itemCount - capacity));
+        int lastPosition = mFirstAdapterPosition + capacity;
+
+        mInterceptRequestLayout = true;
+        try {
+            for (int i = mButtonsCount - 2; i >= 0; i--) {
+                ViewHolder holder = (ViewHolder) getChildAt(i).getTag(R.id.fam_view_holder);
+                if (holder.mPosition < mFirstAdapterPosition || holder.mPosition >= lastPosition
+                        || (mAdapterDataChanged && holder.mItemViewType != mAdapter.getItemViewType(holder.mPosition))) {
+                    recycleViewHolderAt(i);
+                } else if (mAdapterDataChanged) {
+                    //noinspection unchecked
+                    mAdapter.onBindViewHolder(holder, holder.mPosition);
+                }
+            }
+            mAdapterDataChanged = false;
+
+            // What is left is a contiguous, ordered run of the window, fill in around it
+            for (int position = mFirstAdapterPosition; position < lastPosition; position++) {
+                int index = position - mFirstAdapterPosition;
+                if (index < mButtonsCount - 1
+                        && ((ViewHolder) getChildAt(index).getTag(R.id.fam_view_holder)).mPosition == position) {
+                    continue;
+                }
+
+                ViewHolder holder = mPrefetchedHolders.get(position);
+                if (holder != null) {
+                    mPrefetchedHolders.remove(position);
+                } else {
+                    holder = obtainViewHolder(position);
+                }
+                addViewHolder(holder, index);
+            }
+        } finally {
+            mInterceptRequestLayout = false;
+            mLayoutRequestIntercepted = false;
+        }
+    }
+
+    private ViewHolder obtainViewHolder(int position) {
+        int viewType = mAdapter.getItemViewType(position);
+        ViewHolder holder = mRecycledViewPool.get(viewType);
+        if (holder == null) {
+            //noinspection unchecked
+            holder = mAdapter.onCreateViewHolder(this, viewType);
+            holder.mItemViewType = viewType;
+            holder.itemView.setTag(R.id.fam_view_holder, holder);
+        }
+        holder.mPosition = position;
+        //noinspection unchecked
+        mAdapter.onBindViewHolder(holder, position);
+        return holder;
+    }
+
+    private void recyclePrefetchedHolders() {
+        for (int i = 0; i < mPrefetchedHolders.size(); i++) {
+            ViewHolder holder = mPrefetchedHolders.valueAt(i);
+            //noinspection unchecked
+            mAdapter.onViewRecycled(holder);
+            holder.mPosition = -1;
+            mRecycledViewPool.put(holder);
+        }
+        mPrefetchedHolders.clear();
+    }
+
+    /**
+     * Prepares what the next expand needs while the app is otherwise idle. Adapter items are first
+     * given to {@link Adapter#onPrefetch(int)} on a background thread, then the main thread creates
+     * and binds their views, builds labels and animators in short slices whenever its queue is
+     * idle. Items not measured yet are prefetched for the window the screen is likely to fit,
+     * otherwise for the window that scrolling reaches next.
+     */
+    public void prefetchItems() {
+        if (mPrefetching) {
+            return;
+        }
+        mPrefetching = true;
+        prefetchLabelText();
+
+        final Adapter adapter = mAdapter;
+        if (adapter == null) {
+            mPrefetchPosition = mPrefetchEnd = 0;
+            Looper.myQueue().addIdleHandler(mPrefetchIdleHandler);
+            return;
+        }
+
+        int boundCount = mButtonsCount - 1;
+        if (boundCount > 0) {
+            mPrefetchPosition = mFirstAdapterPosition + boundCount;
+            mPrefetchEnd = Math.min(adapter.getItemCount(), mPrefetchPosition + boundCount);
+        } else {
+            int available = mExpandDirection == EXPAND_LEFT || mExpandDirection == EXPAND_RIGHT
+                    ? getResources().getDisplayMetrics().widthPixels : getResources().getDisplayMetrics().heightPixels;
+            int buttonSize = (int) (56 * getResources().getDisplayMetrics().density);
+            mPrefetchPosition = mFirstAdapterPosition;
+            mPrefetchEnd = Math.min(adapter.getItemCount(),
+                    mPrefetchPosition + mLayoutEngine.computeCapacity(available, buttonSize, buttonSize));
+        }
+
+        final int start = mPrefetchPosition;
+        final int end = mPrefetchEnd;
+        final int generation = mPrefetchGeneration;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int position = start; position < end; position++) {
+                    adapter.onPrefetch(position);
+                }
+
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Skipped if cancelled by a new adapter or detach in the meantime
+                        if (generation == mPrefetchGeneration) {
+                            Looper.myQueue().addIdleHandler(mPrefetchIdleHandler);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void cancelPrefetch() {
+        if (mPrefetching) {
+            Looper.myQueue().removeIdleHandler(mPrefetchIdleHandler);
+            mPrefetching = false;
+            mPrefetchGeneration++;
+        }
+        mPrefetchPosition = mPrefetchEnd = 0;
+        if (mAdapter != null) {
+            recyclePrefetchedHolders();
+        }
+    }
+
+    /**
+     * @return false once everything is prepared
+     */
+    private boolean prefetchNext() {
+        while (mAdapter != null && mPrefetchPosition < mPrefetchEnd && mPrefetchPosition < mAdapter.getItemCount()) {
+            int position = mPrefetchPosition++;
+            int index = position - mFirstAdapterPosition;
+            if ((index >= 0 && index < mButtonsCount - 1) || mPrefetchedHolders.get(position) != null) {
+                continue;
+            }
+
+            ViewHolder holder = obtainViewHolder(position);
+            View button = holder.itemView;
+            String title = button instanceof GFFloatingActionButton ? ((GFFloatingActionButton) button).getTitle() : null;
+            if (title != null && mLabelsStyle != 0 && mLabelsMode == LABEL_MODE_VIEW && expandsVertically()
+                    && button.getTag(R.id.fab_label) == null) {
+                // Attached along with the button by addViewHolder
+                TextView label = createLabelView();
+                label.setText(title);
+                ViewCompat.setElevation(label, (int) (5 * getResources().getDisplayMetrics().density));
+                label.setLayoutParams(generateDefaultLayoutParams());
+                button.setTag(R.id.fab_label, label);
+            }
+            mPrefetchedHolders.put(position, holder);
+            return true;
+        }
+
+        for (int i = 0; i < mButtonsCount; i++) {
+            if (getChildAt(i).getTag(R.id.fam_drawn_label) != null && mLabelsMode == LABEL_MODE_VIEW) {
+                if (materializeLabel(i)) {
+                    requestLayout();
+                }
+                return true;
+            }
+        }
+
+        ensureAnimations();
+        return false;
+    }
+
+    private void addViewHolder(ViewHolder holder, int index) {
+        FloatingActionButton button = holder.itemView;
+        ViewGroup.LayoutParams params = button.getLayoutParams();
+        if (!(params instanceof LayoutParams)) {
+            params = params == null ? generateDefaultLayoutParams() : generateLayoutParams(params);
+        }
+        addViewInLayout(button, index, params, true);
+        mButtonsCount++;
+
+        // Recycled holders bring their label along, the title may have changed while detached
+        TextView label = (TextView) button.getTag(R.id.fab_label);
+        String title = button instanceof GFFloatingActionButton ? ((GFFloatingActionButton) button).getTitle() : null;
+        if (label != null && title != null) {
+            label.setText(title);
+            addViewInLayout(label, -1, label.getLayoutParams(), true);
+        } else if (label != null) {
+            button.setTag(R.id.fab_label, null);
+        } else if (mLabelsStyle != 0) {
+            createLabel(button);
+        }
+    }
+
+    private void recycleViewHolderAt(int index) {
+        View button = getChildAt(index);
+        ViewHolder holder = (ViewHolder) button.getTag(R.id.fam_view_holder);
+        View label = (View) button.getTag(R.id.fab_label);
+        if (label != null) {
+            removeViewInLayout(label);
+        }
+        removeViewInLayout(button);
+        mButtonsCount--;
+
+        //noinspection unchecked
+        mAdapter.onViewRecycled(holder);
+        holder.mPosition = -1;
+        mRecycledViewPool.put(holder);
+    }
+
+    private boolean canScrollAdapterItems() {
+        return mAdapter != null && isExpanded() && mAdapter.getItemCount() > mButtonsCount - 1;
+    }
+
+    private float getScrollCoordinate(MotionEvent event) {
+        switch (mExpandDirection) {
+            case EXPAND_UP:
+            case EXPAND_ARC_LEFT_UP:
+            case EXPAND_ARC_RIGHT_UP:
+                return event.getY();
+            case EXPAND_DOWN:
+            case EXPAND_ARC_LEFT_DOWN:
+            case EXPAND_ARC_RIGHT_DOWN:
+                return -event.getY();
+            case EXPAND_LEFT:
+                return event.getX();
+            default:
+                return -event.getX();
+        }
+    }
+
+    void onAdapterDataSetChanged() {
+        recyclePrefetchedHolders();
+        mAdapterDataChanged = true;
+        requestLayout();
+    }
+
+    private void removeButtonAt(int index) {
+        View button = getChildAt(index);
+        View label = (View) button.getTag(R.id.fab_label);
+        if (label != null) {
+            removeView(label);
+            button.setTag(R.id.fab_label, null);
+        }
+        removeViewAt(index);
+        mButtonsCount--;
+    }
+
+    /**
+     * Marks the entries of the longest increasing subsequence, the largest set of items that can
+     * stay in place while the others move around them.
+     */
+    private static boolean[] findStationary(int[] positions) {
+        final int count = positions.length;
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (positions[tails[mid]] < positions[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        boolean[] stationary = new boolean[count];
+        for (int i = length > 0 ? tails[length - 1] : -1; i != -1; i = previous[i]) {
+            stationary[i] = true;
+        }
+        return stationary;
+    }
+
     public void toggle() {
-        if (mExpanded) {
+        if (isExpanded()) {
             collapse();
         } else {
             expand();
         }
     }
 
+    /**
+     * Expands the menu, also cancelling a pending hide. Does nothing while the menu is hidden.
+     */
     public void expand() {
-        if (!mExpanded) {
-            mExpanded = true;
+        if (!isExpanded() && mState != STATE_HIDDEN) {
+            materializeLabels();
+            mState = STATE_EXPANDING;
             mTouchDelegateGroup.setEnabled(true);
             if (mDimWhenExpanded) {
-                ValueAnimator colorAnimation = ValueAnimator.ofObject(new ArgbEvaluator(), mCollapsedDimColor, mExpandedDimColor);
-                colorAnimation.setDuration(ANIMATION_DURATION - 25);
-                colorAnimation.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                setClickable(true);
+                setOnClickListener(mDimClickListener);
+            }
 
-                    @Override
-                    public void onAnimationUpdate(ValueAnimator animator) {
-                        setBackgroundColor((int) animator.getAnimatedValue());
-                    }
+            if (usesSpringAnimations()) {
+                animateSpring(1f, false);
+                if (!mSpringFrameScheduled) {
+                    finishTransition();
+                }
+            } else {
+                ensureAnimations();
+                updateAnimationEngine();
+                mExpandAnimation.start();
+                mCollapseAnimation.cancel();
+                if (usesViewPropertyAnimations()) {
+                    animateItems(true, ANIMATION_DURATION);
+                }
+            }
 
-                });
-                mExpandAnimation.play(colorAnimation);
-                setClickable(true);
-                setOnClickListener(new OnClickListener() {
-                    @Override
-                    public void onClick(View view) {
-                        if (isExpanded()) {
-                            collapse();
-                        }
-                    }
-                });
+            trackAnimationMetrics();
+            if (mListener != null) {
+                mListener.onMenuExpanded();
+            }
+        }
+    }
+
+    public void collapse() {
+        collapse(false);
+    }
+
+    public void collapseImmediately() {
+        collapse(true);
+    }
+
+    public boolean isExpanded() {
+        return mState == STATE_EXPANDING || mState == STATE_EXPANDED;
+    }
+
+    /**
+     * @return whether the menu is hidden or will be once its collapse finishes
+     */
+    public boolean isHidden() {
+        return mState == STATE_HIDING || mState == STATE_HIDDEN;
+    }
+
+    @MenuState
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * Shows the menu if it is hidden or waiting to hide, otherwise does nothing.
+     */
+    public void show() {
+        if (mState == STATE_HIDING) {
+            // The collapse keeps running, it just no longer hides the menu when it ends
+            mState = STATE_COLLAPSING;
+            return;
+        } else if (mState != STATE_HIDDEN) {
+            return;
+        }
+
+        mState = STATE_COLLAPSED;
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            child.setEnabled(true);
+            if (child != mMenuButton) {
+                child.setVisibility(View.VISIBLE);
             }
+        }
+        mMenuButton.show();
+    }
+
+    /**
+     * Hides the menu, first collapsing it if needed. The menu hides as soon as the collapse ends,
+     * calls while it is hiding or hidden do nothing.
+     */
+    public void hide() {
+        if (isExpanded()) {
+            collapse(false, true);
+        } else if (mState == STATE_COLLAPSING) {
+            mState = STATE_HIDING;
+        } else if (mState == STATE_COLLAPSED) {
+            hideButtons();
+        }
+    }
+
+    private void hideButtons() {
+        mState = STATE_HIDDEN;
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            child.setEnabled(false);
+            if (child != mMenuButton) {
+                child.setVisibility(View.GONE);
+            }
+        }
+
+        mMenuButton.hide();
+    }
+
+    private void finishTransition() {
+        if (mState == STATE_EXPANDING) {
+            mState = STATE_EXPANDED;
+        } else if (mState == STATE_COLLAPSING) {
+            mState = STATE_COLLAPSED;
+        } else if (mState == STATE_HIDING) {
+            hideButtons();
+        }
+    }
+
+    private void collapse(boolean immediately) {
+        collapse(immediately, false);
+    }
+
+    private void collapse(boolean immediately, boolean hide) {
+        if (isExpanded()) {
+            mState = hide ? STATE_HIDING : STATE_COLLAPSING;
+            mTouchDelegateGroup.setEnabled(false);
+            if (mDimWhenExpanded) {
+                setOnClickListener(null);
+                setClickable(false);
+            }
+
+            if (usesSpringAnimations()) {
+                animateSpring(0f, immediately);
+                if (!mSpringFrameScheduled) {
+                    finishTransition();
+                }
+            } else {
+                ensureAnimations();
+                updateAnimationEngine();
+                mCollapseAnimation.setDuration(immediately ? 0 : ANIMATION_DURATION);
+                mCollapseAnimation.start();
+                mExpandAnimation.cancel();
+                if (usesViewPropertyAnimations()) {
+                    animateItems(false, immediately ? 0 : ANIMATION_DURATION);
+                }
+            }
+
+            trackAnimationMetrics();
+            if (mListener != null) {
+                mListener.onMenuCollapsed();
+            }
+        }
+    }
+
+    private boolean expandsVertically() {
+        return mExpandDirection == EXPAND_UP || mExpandDirection == EXPAND_DOWN;
+    }
+
+    private void createAddButton(Context context) {
+        mMenuButton = new FloatingActionButton(context);
+        if (mMenuElevation != -1) {
+            mMenuButton.setCompatElevation(mMenuElevation);
+        }
+        mMenuButton.setRippleColor(mMenuRippleColor);
+        mMenuButton.setBackgroundTintList(ColorStateList.valueOf(mMenuBackgroundTint));
+        mMenuButton.setImageDrawable(getMenuDrawable(mMenuIcon));
+        mMenuButton.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                toggle();
+            }
+        });
+
+        addView(mMenuButton, super.generateDefaultLayoutParams());
+        mButtonsCount++;
+    }
+
+    private void createLabels() {
+        if (!expandsVertically()) {
+            Log.e(getClass().getName(), "Labels are only supported on vertical expand directions");
+            return;
+        }
+
+        for (int i = 0; i < mButtonsCount; i++) {
+            createLabel(getChildAt(i));
+        }
+    }
+
+    private void createLabel(View child) {
+        if (!(child instanceof GFFloatingActionButton)) {
+            return;
+        }
+
+        if (!expandsVertically()) {
+            Log.e(getClass().getName(), "Labels are only supported on vertical expand directions");
+            return;
+        }
+
+        GFFloatingActionButton button = (GFFloatingActionButton) child;
+        String title = button.getTitle();
+
+        // Until the menu first opens, label views are only measured from their text
+        if (mLabelsMode == LABEL_MODE_DRAWN || !mLabelsMaterialized) {
+            DrawnLabel drawnLabel = (DrawnLabel) button.getTag(R.id.fam_drawn_label);
+            if (title == null) {
+                button.setTag(R.id.fam_drawn_label, null);
+            } else if (drawnLabel == null) {
+                button.setTag(R.id.fam_drawn_label, new DrawnLabel(title));
+            } else {
+                drawnLabel.setText(title);
+            }
+            return;
+        }
+
+        if (title == null || button.getTag(R.id.fab_label) != null) {
+            return;
+        }
+
+        TextView label = createLabelView();
+        label.setText(button.getTitle());
+        ViewCompat.setElevation(label, (int) (5 * getResources().getDisplayMetrics().density));
+        addView(label);
+
+        button.setTag(R.id.fab_label, label);
+        button.setTag(R.id.fam_drawn_label, null);
+    }
+
+    private TextView createLabelView() {
+        if (mLabelsContext == null) {
+            mLabelsContext = new ContextThemeWrapper(getContext(), mLabelsStyle);
+        }
+
+        TextView label = new TextView(mLabelsContext);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            label.setTextAppearance(mLabelsStyle);
+        } else {
+            label.setTextAppearance(getContext(), mLabelsStyle);
+        }
+        return label;
+    }
+
+    /**
+     * Turns the labels measured from text alone into views. When they measure the same as their
+     * estimate they are laid out in place, otherwise the menu is relaid out.
+     */
+    private void materializeLabels() {
+        if (mLabelsMaterialized) {
+            return;
+        }
+        mLabelsMaterialized = true;
+        if (mLabelsMode == LABEL_MODE_DRAWN) {
+            return;
+        }
+
+        boolean needsLayout = false;
+        for (int i = 0; i < mButtonsCount; i++) {
+            needsLayout |= materializeLabel(i);
+        }
+
+        if (needsLayout) {
+            requestLayout();
+        }
+    }
+
+    /**
+     * @return whether the menu has to be relaid out for the label
+     */
+    private boolean materializeLabel(int index) {
+        View child = getChildAt(index);
+        if (child.getTag(R.id.fam_drawn_label) == null || mLabelsMode == LABEL_MODE_DRAWN) {
+            return false;
+        }
+
+        boolean materialized = mLabelsMaterialized;
+        mLabelsMaterialized = true;
+        mInterceptRequestLayout = true;
+        try {
+            createLabel(child);
+            child.setTag(R.id.fam_drawn_label, null);
+        } finally {
+            mLabelsMaterialized = materialized;
+            mInterceptRequestLayout = false;
+            mLayoutRequestIntercepted = false;
+        }
+
+        TextView label = (TextView) child.getTag(R.id.fab_label);
+        if (label == null || !ViewCompat.isLaidOut(this) || isLayoutRequested() || mItemsCount != mButtonsCount
+                || (mItemFlags[index] & MenuLayoutEngine.FLAG_HAS_LABEL) == 0 || mLayoutEngine.isSkipped(index)) {
+            return true;
+        }
+
+        measureChild(label, mLastWidthMeasureSpec, mLastHeightMeasureSpec);
+        if (label.getMeasuredWidth() != mLabelWidths[index] || label.getMeasuredHeight() != mLabelHeights[index]) {
+            return true;
+        }
+
+        float[] collapsedTranslations = mLayoutEngine.getCollapsedTranslations();
+        layoutItem(label, mLayoutEngine.getLabelBounds(), index * MenuLayoutEngine.BOUNDS_STRIDE,
+                collapsedTranslations[index * MenuLayoutEngine.TRANSLATION_STRIDE],
+                collapsedTranslations[index * MenuLayoutEngine.TRANSLATION_STRIDE + 1]);
+        return false;
+    }
+
+    /**
+     * Creates the labels and animators a collapsed menu defers until it first opens the next time
+     * the main thread is idle, so the first expand does not pay for them.
+     */
+    public void prewarmWhenIdle() {
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                prewarm();
+                return false;
+            }
+        });
+    }
+
+    @VisibleForTesting
+    void prewarm() {
+        materializeLabels();
+        ensureAnimations();
+    }
+
+    private void ensureDrawnLabelStyle() {
+        if (mLabelsPaint != null && mLabelsBackground != null) {
+            return;
+        }
+
+        TextView template = createLabelView();
+        mLabelsPaint = template.getPaint();
+        mLabelsTextColor = template.getCurrentTextColor();
+        mLabelsBackground = template.getBackground();
+        if (mLabelsBackground == null) {
+            mLabelsBackground = new ColorDrawable(Color.TRANSPARENT);
+        }
+        mLabelsPadding.set(template.getPaddingLeft(), template.getPaddingTop(), template.getPaddingRight(), template.getPaddingBottom());
+    }
+
+    private void measureDrawnLabel(DrawnLabel label) {
+        ensureDrawnLabelStyle();
+        int wrapWidth = getLabelWrapWidth();
+        if (label.mLayout == null || label.mLayout.getWidth() != wrapWidth) {
+            label.mLayout = LabelTextCache.obtain(label.mText, mLabelsStyle, wrapWidth, mLabelsPaint);
+        }
+
+        float textWidth = 0f;
+        for (int line = 0, count = label.mLayout.getLineCount(); line < count; line++) {
+            textWidth = Math.max(textWidth, label.mLayout.getLineWidth(line));
+        }
+        label.mWidth = (int) Math.ceil(textWidth) + mLabelsPadding.left + mLabelsPadding.right;
+        label.mHeight = label.mLayout.getHeight() + mLabelsPadding.top + mLabelsPadding.bottom;
+    }
+
+    private void drawLabels(Canvas canvas) {
+        for (int i = 0; i < mItemsCount && i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            DrawnLabel label = (DrawnLabel) child.getTag(R.id.fam_drawn_label);
+            if (label == null || !label.mLaidOut || label.mLayout == null || (mItemFlags[i] & MenuLayoutEngine.FLAG_HAS_LABEL) == 0
+                    || child.getVisibility() != VISIBLE || child.getAlpha() <= 0f) {
+                continue;
+            }
+
+            // The layout's paint is shared through the cache, so it is reset on every draw
+            int alpha = (int) (child.getAlpha() * 255 + 0.5f);
+            TextPaint paint = label.mLayout.getPaint();
+            paint.setColor(mLabelsTextColor);
+            paint.setAlpha(Color.alpha(mLabelsTextColor) * alpha / 255);
+            mLabelsBackground.setAlpha(alpha);
+            mLabelsBackground.setBounds(0, 0, label.mWidth, label.mHeight);
+
+            int saveCount = canvas.save();
+            canvas.translate(label.mLeft + child.getTranslationX(), label.mTop + child.getTranslationY());
+            mLabelsBackground.draw(canvas);
+            canvas.translate(mLabelsPadding.left, mLabelsPadding.top);
+            label.mLayout.draw(canvas);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    private void prefetchLabelText() {
+        if (mLabelsStyle == 0 || !expandsVertically()) {
+            return;
+        }
+
+        for (int i = 0; i < mButtonsCount; i++) {
+            prefetchLabelText(getChildAt(i));
+        }
+    }
+
+    private void prefetchLabelText(View child) {
+        if (mLabelsStyle == 0 || !expandsVertically() || !(child instanceof GFFloatingActionButton)
+                || ((GFFloatingActionButton) child).getTitle() == null) {
+            return;
+        }
+
+        if (mLabelsPaint == null) {
+            // Resolved once per style through a throwaway label, the cache copies it per request
+            mLabelsPaint = createLabelView().getPaint();
+        }
+        LabelTextCache.prefetch(((GFFloatingActionButton) child).getTitle(), mLabelsStyle, getLabelWrapWidth(), mLabelsPaint);
+    }
+
+    private int getLabelWrapWidth() {
+        return mLastWidthMeasureSpec != 0 && MeasureSpec.getMode(mLastWidthMeasureSpec) != MeasureSpec.UNSPECIFIED
+                ? MeasureSpec.getSize(mLastWidthMeasureSpec)
+                : getResources().getDisplayMetrics().widthPixels;
+    }
+
+    private void updateLabelsStyle() {
+        for (int i = 0; i < mButtonsCount; i++) {
+            if (!(getChildAt(i) instanceof GFFloatingActionButton)) {
+                continue;
+            }
+
+            GFFloatingActionButton button = (GFFloatingActionButton) getChildAt(i);
+            if (button.getTag(R.id.fab_label) != null) {
+                removeView((View) button.getTag(R.id.fab_label));
+                button.setTag(R.id.fab_label, null);
+            }
+            button.setTag(R.id.fam_drawn_label, null);
+        }
+
+        createLabels();
+        requestLayout();
+        invalidate();
+    }
+
+    private Drawable getMenuDrawable(Drawable drawable) {
+        // From Lollipop the button itself is rotated, which only updates its render node. The
+        // pre-Lollipop shadow is painted by the button and would rotate with it, so the icon has
+        // to be redrawn rotated there instead
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mRotatingDrawable = null;
+            updateIconAnimations();
+            return drawable;
+        }
+
+        mRotatingDrawable = new RotatingDrawable(drawable);
+        updateIconAnimations();
+        return mRotatingDrawable;
+    }
+
+    private void setIconRotation(float rotation) {
+        if (mRotatingDrawable != null) {
+            mRotatingDrawable.setRotation(rotation);
+        } else {
+            mMenuButton.setRotation(rotation);
+        }
+    }
+
+    private void createAnimations() {
+        final OvershootInterpolator interpolator = new OvershootInterpolator();
+        mExpandIconAnimation = new ObjectAnimator();
+        mExpandIconAnimation.setInterpolator(interpolator);
+        mCollapseIconAnimation = new ObjectAnimator();
+        mCollapseIconAnimation.setInterpolator(interpolator);
+
+        mExpandIconAnimation.addUpdateListener(mLabelsUpdateListener);
+        mCollapseIconAnimation.addUpdateListener(mLabelsUpdateListener);
+
+        mExpandDimAnimation = ValueAnimator.ofFloat(0f, 1f);
+        mExpandDimAnimation.addUpdateListener(mDimUpdateListener);
+        mCollapseDimAnimation = ValueAnimator.ofFloat(0f, 1f);
+        mCollapseDimAnimation.addUpdateListener(mDimUpdateListener);
+
+        // The engine applies the curves per item, the drivers only supply the elapsed fraction
+        final LinearInterpolator linear = new LinearInterpolator();
+        mExpandItemsAnimation = ValueAnimator.ofFloat(0f, 1f);
+        mExpandItemsAnimation.setInterpolator(linear);
+        mExpandItemsAnimation.addUpdateListener(mItemsUpdateListener);
+        mCollapseItemsAnimation = ValueAnimator.ofFloat(0f, 1f);
+        mCollapseItemsAnimation.setInterpolator(linear);
+        mCollapseItemsAnimation.addUpdateListener(mItemsUpdateListener);
+    }
+
+    private void updateAnimationEngine() {
+        mAnimationEngine.setItemCount(getChildCount());
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            ViewGroup.LayoutParams params = getChildAt(i).getLayoutParams();
+            if (params instanceof LayoutParams) {
+                mAnimationEngine.setCollapsedTranslation(i, ((LayoutParams) params).mCollapsedXTranslation,
+                        ((LayoutParams) params).mCollapsedYTranslation);
+            } else {
+                mAnimationEngine.setCollapsedTranslation(i, 0f, 0f);
+            }
+        }
+    }
+
+    private void updateIconAnimations() {
+        setIconRotation(isExpanded() ? mExpandedIconRotation : mCollapsedIconRotation);
+        if (mRotatingDrawable != null) {
+            mExpandIconAnimation.setTarget(mRotatingDrawable);
+            mExpandIconAnimation.setProperty(DRAWABLE_ROTATION);
+            mCollapseIconAnimation.setTarget(mRotatingDrawable);
+            mCollapseIconAnimation.setProperty(DRAWABLE_ROTATION);
+        } else {
+            mExpandIconAnimation.setTarget(mMenuButton);
+            mExpandIconAnimation.setProperty(View.ROTATION);
+            mCollapseIconAnimation.setTarget(mMenuButton);
+            mCollapseIconAnimation.setProperty(View.ROTATION);
+        }
+        mExpandIconAnimation.setFloatValues(mCollapsedIconRotation, mExpandedIconRotation);
+        mCollapseIconAnimation.setFloatValues(mExpandedIconRotation, mCollapsedIconRotation);
+    }
+
+    private void ensureAnimations() {
+        if (!mAnimationsDirty) {
+            return;
+        }
+
+        // AnimatorSet cannot drop children, so configuration changes rebuild both sets from the
+        // animators we already own instead of appending to the old ones. The options are all
+        // driven by one animator per direction, adding or removing them needs no rebuild
+        mExpandAnimation.cancel();
+        mCollapseAnimation.cancel();
+        mExpandAnimation = new AnimatorSet().setDuration(ANIMATION_DURATION);
+        mCollapseAnimation = new AnimatorSet().setDuration(ANIMATION_DURATION);
+        AnimatorSet.Builder expand = mExpandAnimation.play(mExpandIconAnimation);
+        AnimatorSet.Builder collapse = mCollapseAnimation.play(mCollapseIconAnimation);
+
+        if (mDimWhenExpanded) {
+            expand.with(mExpandDimAnimation);
+            collapse.with(mCollapseDimAnimation);
+        }
+
+        // The icon animators still set the length of both sets, which keeps the layer listener
+        // and completion callbacks working when the options run their own ViewPropertyAnimators
+        if (!usesViewPropertyAnimations() && !usesSpringAnimations()) {
+            expand.with(mExpandItemsAnimation);
+            collapse.with(mCollapseItemsAnimation);
+        }
 
-            mCollapseAnimation.cancel();
-            mExpandAnimation.start();
+        mExpandAnimation.addListener(mLayerListener);
+        mCollapseAnimation.addListener(mLayerListener);
+        mExpandAnimation.addListener(mStateListener);
+        mCollapseAnimation.addListener(mStateListener);
+        mAnimationsDirty = false;
+    }
 
-            if (mListener != null) {
-                mListener.onMenuExpanded();
-            }
-        }
+    private boolean isAnimating() {
+        return mSpringFrameScheduled || mExpandAnimation.isStarted() || mCollapseAnimation.isStarted();
     }
 
-    public void collapse() {
-        collapse(false);
+    private void trackAnimationMetrics() {
+        if (mMetricsListener == null) {
+            return;
+        }
+
+        // A toggle in flight restarts the counts for the new direction
+        mMetricsStartNanos = mClock.nanoTime();
+        mMetricsFrameCount = 0;
+        mMetricsJankyFrameCount = 0;
+        if (!mMetricsFrameScheduled) {
+            mMetricsFrameScheduled = true;
+            mClock.postFrameCallback(mMetricsFrameCallback);
+        }
     }
 
-    public void collapseImmediately() {
-        collapse(true);
+    private int countItemLayers() {
+        int count = 0;
+        for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
+            if (getChildAt(i) != mMenuButton && getChildAt(i).getLayerType() == LAYER_TYPE_HARDWARE) {
+                count++;
+            }
+        }
+        return count;
     }
 
-    public boolean isExpanded() {
-        return mExpanded;
+    private void animateSpring(float target, boolean immediately) {
+        // Slot 0 drives the icon and dim, the options and labels follow by child index
+        mSpring.setItemCount(getChildCount() + 1);
+        mSpring.setTarget(target);
+
+        float maxDistance = 1f;
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            ViewGroup.LayoutParams params = getChildAt(i).getLayoutParams();
+            if (params instanceof LayoutParams) {
+                maxDistance = Math.max(maxDistance, Math.max(Math.abs(((LayoutParams) params).mCollapsedXTranslation),
+                        Math.abs(((LayoutParams) params).mCollapsedYTranslation)));
+            }
+        }
+        mSpring.setValueThreshold(0.5f / maxDistance);
+
+        if (immediately) {
+            mSpring.snapToTarget();
+            applySpringProgress();
+        } else if (!mSpringFrameScheduled && mSpring.isRunning()) {
+            mSpringFrameScheduled = true;
+            mSpringFrameTimeNanos = 0;
+            if (mLayerPolicy == LAYERS_DURING_ANIMATION) {
+                setItemLayerType(LAYER_TYPE_HARDWARE);
+            }
+            mClock.postFrameCallback(mSpringFrameCallback);
+        }
     }
 
-    public void show() {
-        for (int i = 0; i < mButtonsCount; i++) {
+    private void applySpringProgress() {
+        float progress = mSpring.getPosition(0);
+        if (mLabelsMode == LABEL_MODE_DRAWN) {
+            invalidate();
+        }
+        setIconRotation(mCollapsedIconRotation + (mExpandedIconRotation - mCollapsedIconRotation) * progress);
+        if (mDimWhenExpanded) {
+            mDimFraction = Math.max(0f, Math.min(1f, progress));
+            invalidateScrim();
+        }
+
+        for (int i = 0, count = Math.min(getChildCount(), mSpring.getItemCount() - 1); i < count; i++) {
             View child = getChildAt(i);
-            child.setEnabled(true);
-            if (child != mMenuButton) {
-                child.setVisibility(View.VISIBLE);
+            ViewGroup.LayoutParams params = child.getLayoutParams();
+            if (params instanceof LayoutParams) {
+                ((LayoutParams) params).applyProgress(child, mSpring.getPosition(i + 1));
             }
         }
-        mMenuButton.show();
     }
 
-    public void hide() {
-        if (isExpanded()) {
-            collapse();
-            postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    hide();
-                }
-            }, ANIMATION_DURATION * 5);
-        } else {
-            for (int i = 0; i < mButtonsCount; i++) {
-                View child = getChildAt(i);
-                child.setEnabled(false);
-                if (child != mMenuButton) {
-                    child.setVisibility(View.GONE);
-                }
+    private void animateItems(boolean expand, long duration) {
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            View child = getChildAt(i);
+            ViewGroup.LayoutParams params = child.getLayoutParams();
+            if (params instanceof LayoutParams) {
+                ((LayoutParams) params).animate(child, expand, (long) (duration * mAnimationEngine.getItemSpan()),
+                        (long) (duration * mAnimationEngine.getItemStart(i, expand)));
             }
+        }
+    }
 
-            mMenuButton.hide();
+    private void setItemLayerType(int layerType) {
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            View child = getChildAt(i);
+            ViewGroup.LayoutParams params = child.getLayoutParams();
+            if (params instanceof LayoutParams && ((LayoutParams) params).mHasAnimationsTarget
+                    && child.getLayerType() != layerType) {
+                child.setLayerType(layerType, null);
+            }
         }
     }
 
-    private void collapse(boolean immediately) {
-        if (mExpanded) {
-            mExpanded = false;
-            mTouchDelegateGroup.setEnabled(false);
-            mCollapseAnimation.setDuration(immediately ? 0 : ANIMATION_DURATION);
-            if (mDimWhenExpanded) {
-                ValueAnimator colorAnimation = ValueAnimator.ofObject(new ArgbEvaluator(), mExpandedDimColor, mCollapsedDimColor);
-                colorAnimation.setDuration(immediately ? 0 : ANIMATION_DURATION - 25);
-                colorAnimation.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+    private void collectChildSizes() {
+        if (mItemWidths.length < mButtonsCount) {
+            mItemWidths = new int[mButtonsCount];
+            mItemHeights = new int[mButtonsCount];
+            mItemFlags = new int[mButtonsCount];
+            mLabelWidths = new int[mButtonsCount];
+            mLabelHeights = new int[mButtonsCount];
+        }
 
-                    @Override
-                    public void onAnimationUpdate(ValueAnimator animator) {
-                        setBackgroundColor((int) animator.getAnimatedValue());
-                    }
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            mItemWidths[i] = child.getMeasuredWidth();
+            mItemHeights[i] = child.getMeasuredHeight();
 
-                });
-                mCollapseAnimation.play(colorAnimation);
-                setOnClickListener(null);
-                setClickable(false);
+            int flags = 0;
+            if (child.getVisibility() == GONE) {
+                flags |= MenuLayoutEngine.FLAG_GONE;
+            }
+            if (child == mMenuButton) {
+                flags |= MenuLayoutEngine.FLAG_MENU_BUTTON;
             }
 
-            mCollapseAnimation.start();
-            mExpandAnimation.cancel();
-
-            if (mListener != null) {
-                mListener.onMenuCollapsed();
+            View label = (View) child.getTag(R.id.fab_label);
+            DrawnLabel drawnLabel = (DrawnLabel) child.getTag(R.id.fam_drawn_label);
+            if (label != null && expandsVertically()) {
+                flags |= MenuLayoutEngine.FLAG_HAS_LABEL;
+                mLabelWidths[i] = label.getMeasuredWidth();
+                mLabelHeights[i] = label.getMeasuredHeight();
+            } else if (drawnLabel != null && expandsVertically()) {
+                flags |= MenuLayoutEngine.FLAG_HAS_LABEL;
+                measureDrawnLabel(drawnLabel);
+                mLabelWidths[i] = drawnLabel.mWidth;
+                mLabelHeights[i] = drawnLabel.mHeight;
             }
+            mItemFlags[i] = flags;
         }
-    }
 
-    private boolean expandsHorizontally() {
-        return mExpandDirection == EXPAND_LEFT || mExpandDirection == EXPAND_RIGHT;
+        mItemsCount = mButtonsCount;
+        mLayoutEngine.setItems(mButtonsCount, mItemWidths, mItemHeights, mItemFlags, mLabelWidths, mLabelHeights);
     }
 
-    private boolean expandsVertically() {
-        return mExpandDirection == EXPAND_UP || mExpandDirection == EXPAND_DOWN;
+    private void layoutItem(View view, int[] bounds, int offset, float collapsedXTranslation, float collapsedYTranslation) {
+        int left = bounds[offset];
+        int top = bounds[offset + 1];
+        int right = bounds[offset + 2];
+        int bottom = bounds[offset + 3];
+
+        // Items that did not move keep their current translation, alpha and animators
+        LayoutParams params = (LayoutParams) view.getLayoutParams();
+        if (params.updateLayout(left, top, right, bottom, collapsedXTranslation, collapsedYTranslation)) {
+            view.layout(left, top, right, bottom);
+            applyTranslations(view, collapsedXTranslation, collapsedYTranslation);
+        } else if (view.isLayoutRequested()) {
+            view.layout(left, top, right, bottom);
+        }
     }
 
-    private void createAddButton(Context context) {
-        mMenuButton = new FloatingActionButton(context);
-        if (mMenuElevation != -1) {
-            mMenuButton.setCompatElevation(mMenuElevation);
+    private void updateTouchTargets() {
+        mTouchDelegateGroup.clearTouchTargets();
+
+        int[] childBounds = mLayoutEngine.getChildBounds();
+        int[] labelBounds = mLayoutEngine.getLabelBounds();
+        for (int i = mItemsCount - 1; i >= 0; i--) {
+            if (mLayoutEngine.isSkipped(i) || (mItemFlags[i] & MenuLayoutEngine.FLAG_HAS_LABEL) == 0) continue;
+
+            int bounds = i * MenuLayoutEngine.BOUNDS_STRIDE;
+            mTouchDelegateGroup.addTouchTarget(getChildAt(i),
+                    Math.min(childBounds[bounds], labelBounds[bounds]),
+                    childBounds[bounds + 1] - mButtonSpacing / 2,
+                    Math.max(childBounds[bounds + 2], labelBounds[bounds + 2]),
+                    childBounds[bounds + 3] + mButtonSpacing / 2);
         }
-        mMenuButton.setRippleColor(mMenuRippleColor);
-        mMenuButton.setBackgroundTintList(ColorStateList.valueOf(mMenuBackgroundTint));
-        Drawable drawable = DrawableCompat.wrap(mMenuIcon);
-        DrawableCompat.setTint(drawable, mMenuIconTint);
-        mMenuButton.setImageDrawable(getMenuDrawable(drawable));
-        mMenuButton.setOnClickListener(new OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                toggle();
-            }
-        });
 
-        addView(mMenuButton, super.generateDefaultLayoutParams());
-        mButtonsCount++;
+        mTouchDelegateGroup.buildTouchTargets();
     }
 
-    private void createLabels() {
-        Context context = new ContextThemeWrapper(getContext(), mLabelsStyle);
+    void updateLabel(GFFloatingActionButton button, TextView label, String title) {
+        if (label == null) {
+            DrawnLabel drawnLabel = (DrawnLabel) button.getTag(R.id.fam_drawn_label);
+            if (drawnLabel != null) {
+                updateDrawnLabel(button, drawnLabel, title);
+            }
+            return;
+        }
 
-        if (!expandsVertically()) {
-            Log.e(getClass().getName(), "Labels are only supported on vertical expand directions");
+        int index = indexOfChild(button);
+        if (!canRelayoutLabel(index)) {
+            label.setText(title);
             return;
         }
 
-        for (int i = 0; i < mButtonsCount; i++) {
-            if (!(getChildAt(i) instanceof GFFloatingActionButton)) {
-                continue;
-            }
+        // Keep the label's layout request from triggering a full pass, it is handled below
+        mInterceptRequestLayout = true;
+        try {
+            label.setText(title);
+        } finally {
+            mInterceptRequestLayout = false;
+        }
 
-            GFFloatingActionButton button = (GFFloatingActionButton) getChildAt(i);
-            String title = button.getTitle();
+        if (!mLayoutRequestIntercepted) {
+            return;
+        }
+        mLayoutRequestIntercepted = false;
 
-            if (title == null || button.getTag(R.id.fab_label) != null) {
-                continue;
-            }
+        measureChild(label, mLastWidthMeasureSpec, mLastHeightMeasureSpec);
+        if (!relayoutLabel(index, label.getMeasuredWidth(), label.getMeasuredHeight())) {
+            requestLayout();
+            return;
+        }
 
-            TextView label = new TextView(context);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                label.setTextAppearance(mLabelsStyle);
-            } else {
-                label.setTextAppearance(getContext(), mLabelsStyle);
-            }
-            label.setText(button.getTitle());
-            ViewCompat.setElevation(label, (int) (5 * getResources().getDisplayMetrics().density));
-            addView(label);
+        layoutItem(label, mLayoutEngine.getLabelBounds(), index * MenuLayoutEngine.BOUNDS_STRIDE,
+                ((LayoutParams) label.getLayoutParams()).mCollapsedXTranslation,
+                ((LayoutParams) label.getLayoutParams()).mCollapsedYTranslation);
+        updateTouchTargets();
+    }
 
-            button.setTag(R.id.fab_label, label);
+    private void updateDrawnLabel(GFFloatingActionButton button, DrawnLabel drawnLabel, String title) {
+        if (title == null) {
+            button.setTag(R.id.fam_drawn_label, null);
+            requestLayout();
+            invalidate();
+            return;
         }
-    }
 
-    private void updateLabelsStyle() {
-        for (int i = 0; i < mButtonsCount; i++) {
-            if (!(getChildAt(i) instanceof GFFloatingActionButton)) {
-                continue;
-            }
+        // Stays a placeholder until the menu first opens, only its text is measured
+        drawnLabel.setText(title);
+        int index = indexOfChild(button);
+        if (!canRelayoutLabel(index)) {
+            requestLayout();
+            invalidate();
+            return;
+        }
 
-            GFFloatingActionButton button = (GFFloatingActionButton) getChildAt(i);
-            if (button.getTag(R.id.fab_label) != null) {
-                removeView((View) button.getTag(R.id.fab_label));
-                button.setTag(R.id.fab_label, null);
-            }
+        measureDrawnLabel(drawnLabel);
+        if (!relayoutLabel(index, drawnLabel.mWidth, drawnLabel.mHeight)) {
+            requestLayout();
+            invalidate();
+            return;
         }
 
-        createLabels();
+        int[] labelBounds = mLayoutEngine.getLabelBounds();
+        drawnLabel.mLeft = labelBounds[index * MenuLayoutEngine.BOUNDS_STRIDE];
+        drawnLabel.mTop = labelBounds[index * MenuLayoutEngine.BOUNDS_STRIDE + 1];
+        updateTouchTargets();
+        invalidate();
     }
 
-    private RotatingDrawable getMenuDrawable(Drawable drawable) {
-        mRotatingDrawable = new RotatingDrawable(drawable);
-        final OvershootInterpolator interpolator = new OvershootInterpolator();
-        final ObjectAnimator collapseAnimator = ObjectAnimator.ofFloat(mRotatingDrawable, "rotation", mExpandedIconRotation, mCollapsedIconRotation);
-        final ObjectAnimator expandAnimator = ObjectAnimator.ofFloat(mRotatingDrawable, "rotation", mCollapsedIconRotation, mExpandedIconRotation);
-        collapseAnimator.setInterpolator(interpolator);
-        expandAnimator.setInterpolator(interpolator);
-        mExpandAnimation.play(expandAnimator);
-        mCollapseAnimation.play(collapseAnimator);
-        return mRotatingDrawable;
+    private boolean canRelayoutLabel(int index) {
+        return index >= 0 && index < mItemsCount && (mItemFlags[index] & MenuLayoutEngine.FLAG_HAS_LABEL) != 0
+                && !mLayoutEngine.isSkipped(index) && !isLayoutRequested() && ViewCompat.isLaidOut(this);
+    }
+
+    /**
+     * Moves the label at {@code index} to its new size without a full pass.
+     *
+     * @return false if the menu itself changes size and has to be relaid out
+     */
+    private boolean relayoutLabel(int index, int width, int height) {
+        int oldWidth = mLabelWidths[index];
+        int maxLabelWidth = mLayoutEngine.getMaxLabelWidth();
+        if (width > maxLabelWidth || (oldWidth == maxLabelWidth && width != maxLabelWidth)
+                || height != mLabelHeights[index]) {
+            return false;
+        }
+
+        mLabelWidths[index] = width;
+        mLayoutEngine.layoutLabel(index);
+        return true;
     }
 
-    private int adjustForOvershoot(int dimension) {
-        return dimension * 12 / 10;
+    private void applyTranslations(View view, float collapsedXTranslation, float collapsedYTranslation) {
+        float expandedTranslation = 0f;
+
+        if (usesViewPropertyAnimations()) {
+            view.animate().cancel();
+        }
+
+        view.setTranslationX(isExpanded() ? expandedTranslation : collapsedXTranslation);
+        view.setTranslationY(isExpanded() ? expandedTranslation : collapsedYTranslation);
+        view.setAlpha(isExpanded() ? 1f : 0f);
+
+        LayoutParams params = (LayoutParams) view.getLayoutParams();
+        params.setAnimationsTarget(view);
+
+        if (mExpandItemsAnimation.isRunning() || mCollapseItemsAnimation.isRunning()) {
+            // Relaid out mid-flight, the next frame continues towards the new position
+            int index = indexOfChild(view);
+            if (index < mAnimationEngine.getItemCount()) {
+                mAnimationEngine.setCollapsedTranslation(index, collapsedXTranslation, collapsedYTranslation);
+            }
+        } else if (mSpringFrameScheduled) {
+            // Relaid out mid-flight, pick up the spring where it is rather than the endpoint
+            int index = indexOfChild(view) + 1;
+            if (index < mSpring.getItemCount()) {
+                params.applyProgress(view, mSpring.getPosition(index));
+            }
+        }
     }
 
     private AppBarLayout findFirstDependency(List<View> views) {
@@ -883,29 +2405,21 @@ public class GFFloatingActionMenu extends ViewGroup {
         return null;
     }
 
-    private int getAdjustedYCoordinateForAppBarLayoutAnchor(int initialY) {
+    private int getAppBarLayoutAnchorOffset() {
         if (!(getLayoutParams() instanceof CoordinatorLayout.LayoutParams) || !(getParent() instanceof CoordinatorLayout)) {
-            return initialY;
+            return 0;
         } else if (((CoordinatorLayout.LayoutParams) getLayoutParams()).getAnchorId() != NO_ID) {
             CoordinatorLayout parent = (CoordinatorLayout) getParent();
             final CoordinatorLayout.LayoutParams lp = (CoordinatorLayout.LayoutParams) getLayoutParams();
             if (parent.findViewById(lp.getAnchorId()) != null) {
                 if (parent.findViewById(lp.getAnchorId()) instanceof AppBarLayout) {
-                    int newY = initialY;
-                    if (mExpandDirection == EXPAND_UP || mExpandDirection == EXPAND_ARC_LEFT_UP || mExpandDirection == EXPAND_ARC_RIGHT_UP) {
-                        newY -= getMeasuredHeight() / 2;
-                        newY += mMenuButton.getMeasuredHeight() / 2;
-                    } else {
-                        newY += getMeasuredHeight() / 2;
-                        newY -= mMenuButton.getMeasuredHeight() / 2;
-                    }
-                    return newY;
+                    return getMeasuredHeight() / 2 - mMenuButton.getMeasuredHeight() / 2;
                 } else {
                     throw new IllegalStateException("Anchoring to a non AppBarLayout is not currently supported");
                 }
             }
         }
-        return initialY;
+        return 0;
     }
 
     private static class RotatingDrawable extends LayerDrawable {
@@ -916,12 +2430,10 @@ public class GFFloatingActionMenu extends ViewGroup {
 
         private float mRotation;
 
-        @SuppressWarnings("UnusedDeclaration")
         float getRotation() {
             return mRotation;
         }
 
-        @SuppressWarnings("UnusedDeclaration")
         void setRotation(float rotation) {
             mRotation = rotation;
             invalidateSelf();
@@ -938,74 +2450,246 @@ public class GFFloatingActionMenu extends ViewGroup {
 
     private class LayoutParams extends ViewGroup.LayoutParams {
 
-        private ObjectAnimator mExpandXDir = new ObjectAnimator();
-        private ObjectAnimator mExpandYDir = new ObjectAnimator();
-        private ObjectAnimator mExpandAlpha = new ObjectAnimator();
-        private ObjectAnimator mCollapseXDir = new ObjectAnimator();
-        private ObjectAnimator mCollapseYDir = new ObjectAnimator();
-        private ObjectAnimator mCollapseAlpha = new ObjectAnimator();
-        private boolean animationsSetToPlay;
+        private boolean mHasAnimationsTarget;
+        private boolean mLayoutValid;
+        private int mLeft;
+        private int mTop;
+        private int mRight;
+        private int mBottom;
+        private float mCollapsedXTranslation;
+        private float mCollapsedYTranslation;
 
         LayoutParams(ViewGroup.LayoutParams source) {
             super(source);
+        }
 
-            mExpandXDir.setInterpolator(sExpandInterpolator);
-            mExpandYDir.setInterpolator(sExpandInterpolator);
-            mExpandAlpha.setInterpolator(sAlphaExpandInterpolator);
-            mCollapseXDir.setInterpolator(sCollapseInterpolator);
-            mCollapseYDir.setInterpolator(sCollapseInterpolator);
-            mCollapseAlpha.setInterpolator(sCollapseInterpolator);
-
-            mCollapseAlpha.setProperty(View.ALPHA);
-            mCollapseAlpha.setFloatValues(1f, 0f);
+        boolean updateLayout(int left, int top, int right, int bottom, float collapsedXTranslation, float collapsedYTranslation) {
+            if (mLayoutValid && mLeft == left && mTop == top && mRight == right && mBottom == bottom
+                    && mCollapsedXTranslation == collapsedXTranslation && mCollapsedYTranslation == collapsedYTranslation) {
+                return false;
+            }
 
-            mExpandAlpha.setProperty(View.ALPHA);
-            mExpandAlpha.setFloatValues(0f, 1f);
+            mLayoutValid = true;
+            mLeft = left;
+            mTop = top;
+            mRight = right;
+            mBottom = bottom;
+            mCollapsedXTranslation = collapsedXTranslation;
+            mCollapsedYTranslation = collapsedYTranslation;
+            return true;
+        }
 
-            mCollapseXDir.setProperty(View.TRANSLATION_X);
-            mExpandXDir.setProperty(View.TRANSLATION_X);
-            mCollapseYDir.setProperty(View.TRANSLATION_Y);
-            mExpandYDir.setProperty(View.TRANSLATION_Y);
+        void invalidateLayout() {
+            mLayoutValid = false;
         }
 
         void setAnimationsTarget(View view) {
-            view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
-            mCollapseAlpha.setTarget(view);
-            mExpandAlpha.setTarget(view);
-            mCollapseXDir.setTarget(view);
-            mCollapseYDir.setTarget(view);
-            mExpandXDir.setTarget(view);
-            mExpandYDir.setTarget(view);
-
-            // Now that the animations have targets, set them to be played
-            if (!animationsSetToPlay) {
-
-                mCollapseAnimation.play(mCollapseAlpha);
-                mExpandAnimation.play(mExpandAlpha);
-                switch (mExpandDirection) {
-                    case EXPAND_UP:
-                    case EXPAND_DOWN:
-                        mCollapseAnimation.play(mCollapseYDir);
-                        mExpandAnimation.play(mExpandYDir);
-                        break;
-                    case EXPAND_LEFT:
-                    case EXPAND_RIGHT:
-                        mCollapseAnimation.play(mCollapseXDir);
-                        mExpandAnimation.play(mExpandXDir);
-                        break;
-                    case EXPAND_ARC_LEFT_UP:
-                    case EXPAND_ARC_LEFT_DOWN:
-                    case EXPAND_ARC_RIGHT_UP:
-                    case EXPAND_ARC_RIGHT_DOWN:
-                        mCollapseAnimation.play(mCollapseYDir);
-                        mCollapseAnimation.play(mCollapseXDir);
-                        mExpandAnimation.play(mExpandYDir);
-                        mExpandAnimation.play(mExpandXDir);
-                        break;
+            if (mLayerPolicy == LAYERS_ALWAYS) {
+                view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+            }
+            mHasAnimationsTarget = true;
+        }
+
+        void applyProgress(View view, float progress) {
+            if (!mHasAnimationsTarget) {
+                return;
+            }
+
+            view.setTranslationX(mCollapsedXTranslation * (1f - progress));
+            view.setTranslationY(mCollapsedYTranslation * (1f - progress));
+            view.setAlpha(Math.max(0f, Math.min(1f, progress)));
+        }
+
+        void animate(View view, boolean expand, long duration, long startDelay) {
+            if (!mHasAnimationsTarget) {
+                return;
+            }
+
+            // No listeners, update listeners or end actions, so the frames only touch the render
+            // node. The one interpolator applies to alpha too, which clamps at 1 while overshooting
+            view.animate()
+                    .setDuration(duration)
+                    .setStartDelay(startDelay)
+                    .setInterpolator(expand ? sExpandInterpolator : sCollapseInterpolator)
+                    .translationX(expand ? 0f : mCollapsedXTranslation)
+                    .translationY(expand ? 0f : mCollapsedYTranslation)
+                    .alpha(expand ? 1f : 0f)
+                    .start();
+        }
+    }
+
+    private static class DrawnLabel {
+
+        private CharSequence mText;
+        private Layout mLayout;
+        private boolean mLaidOut;
+        private int mLeft;
+        private int mTop;
+        private int mWidth;
+        private int mHeight;
+
+        DrawnLabel(CharSequence text) {
+            mText = text;
+        }
+
+        void setText(CharSequence text) {
+            if (!text.equals(mText)) {
+                mText = text;
+                mLayout = null;
+            }
+        }
+    }
+
+    private static class MenuItemsAdapter extends Adapter<ViewHolder> implements OnClickListener {
+
+        private final GFFloatingActionMenu mOwner;
+        private final MenuItems mItems;
+        private ColorStateList mDefaultBackgroundTint;
+        private final SparseArray<Drawable> mPrefetchedIcons = new SparseArray<>();
+
+        MenuItemsAdapter(GFFloatingActionMenu owner, MenuItems items) {
+            mOwner = owner;
+            mItems = items;
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItems.size();
+        }
+
+        @Override
+        public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            GFFloatingActionButton button = new GFFloatingActionButton(parent.getContext());
+            button.setOnClickListener(this);
+            mDefaultBackgroundTint = button.getBackgroundTintList();
+            return new ViewHolder(button);
+        }
+
+        @Override
+        public void onBindViewHolder(ViewHolder holder, int position) {
+            GFFloatingActionButton button = (GFFloatingActionButton) holder.itemView;
+            button.setId(mItems.getId(position));
+            CharSequence title = mItems.getTitle(position);
+            button.setTitle(title != null ? title.toString() : null);
+            button.setContentDescription(title);
+
+            Drawable icon;
+            synchronized (mPrefetchedIcons) {
+                icon = mPrefetchedIcons.get(position);
+                mPrefetchedIcons.remove(position);
+            }
+            button.setImageDrawable(icon != null ? icon : loadIcon(button.getContext(), position));
+            if (mItems.hasBackgroundTint(position)) {
+                button.setBackgroundTintList(ColorStateList.valueOf(mItems.getBackgroundTint(position)));
+            } else {
+                button.setBackgroundTintList(mDefaultBackgroundTint);
+            }
+        }
+
+        @Override
+        public void onPrefetch(int position) {
+            Drawable icon = loadIcon(mOwner.getContext(), position);
+            if (icon != null) {
+                synchronized (mPrefetchedIcons) {
+                    mPrefetchedIcons.put(position, icon);
                 }
+            }
+        }
+
+        private Drawable loadIcon(Context context, int position) {
+            int icon = mItems.getIcon(position);
+            if (icon == 0) {
+                return null;
+            } else if (mItems.hasIconTint(position)) {
+                return GFTintedIconCache.get(context, icon, mItems.getIconTint(position));
+            }
+            return ContextCompat.getDrawable(context, icon);
+        }
+
+        @Override
+        public void onClick(View v) {
+            if (mOwner.mMenuItemClickListener != null) {
+                mOwner.mMenuItemClickListener.onMenuItemClick(v.getId());
+            }
+        }
+    }
+
+    public static abstract class Adapter<VH extends ViewHolder> {
+
+        private GFFloatingActionMenu mMenu;
+
+        public abstract int getItemCount();
 
-                animationsSetToPlay = true;
+        public int getItemViewType(int position) {
+            return 0;
+        }
+
+        public abstract VH onCreateViewHolder(ViewGroup parent, int viewType);
+
+        public abstract void onBindViewHolder(VH holder, int position);
+
+        /**
+         * Called on a background thread by {@link GFFloatingActionMenu#prefetchItems()} before the
+         * item is bound. Load or decode whatever onBindViewHolder will need, without touching views.
+         */
+        public void onPrefetch(int position) {
+        }
+
+        public void onViewRecycled(VH holder) {
+        }
+
+        public final void notifyDataSetChanged() {
+            if (mMenu != null) {
+                mMenu.onAdapterDataSetChanged();
+            }
+        }
+    }
+
+    public static class ViewHolder {
+
+        public final FloatingActionButton itemView;
+        int mPosition = -1;
+        int mItemViewType;
+
+        public ViewHolder(@NonNull FloatingActionButton itemView) {
+            this.itemView = itemView;
+        }
+
+        public int getAdapterPosition() {
+            return mPosition;
+        }
+
+        public int getItemViewType() {
+            return mItemViewType;
+        }
+    }
+
+    private static class RecycledViewPool {
+
+        private static final int MAX_SCRAP = 5;
+        private final SparseArray<ArrayList<ViewHolder>> mScrap = new SparseArray<>();
+
+        ViewHolder get(int viewType) {
+            ArrayList<ViewHolder> scrap = mScrap.get(viewType);
+            if (scrap == null || scrap.isEmpty()) {
+                return null;
+            }
+            return scrap.remove(scrap.size() - 1);
+        }
+
+        void put(ViewHolder holder) {
+            ArrayList<ViewHolder> scrap = mScrap.get(holder.mItemViewType);
+            if (scrap == null) {
+                scrap = new ArrayList<>(MAX_SCRAP);
+                mScrap.put(holder.mItemViewType, scrap);
             }
+            if (scrap.size() < MAX_SCRAP) {
+                scrap.add(holder);
+            }
+        }
+
+        void clear() {
+            mScrap.clear();
         }
     }
 
@@ -1044,68 +2728,102 @@ public class GFFloatingActionMenu extends ViewGroup {
     private static class TouchDelegateGroup extends TouchDelegate {
 
         private static final Rect USELESS_HACKY_RECT = new Rect();
-        private final ArrayList<TouchDelegate> mTouchDelegates = new ArrayList<>();
-        private TouchDelegate mCurrentTouchDelegate;
+        private final TouchTargetIndex mTouchTargets = new TouchTargetIndex();
+        private View[] mTargetViews = new View[0];
+        private final int[] mCurrentArea = new int[4];
+        private final int mSlop;
+        private View mCurrentTarget;
         private boolean mEnabled;
 
         TouchDelegateGroup(View uselessHackyView) {
             super(USELESS_HACKY_RECT, uselessHackyView);
+            mSlop = ViewConfiguration.get(uselessHackyView.getContext()).getScaledTouchSlop();
         }
 
         @Override
         public boolean onTouchEvent(@NonNull MotionEvent event) {
             if (!mEnabled) return false;
 
-            TouchDelegate delegate = null;
+            final int x = (int) event.getX();
+            final int y = (int) event.getY();
+            View target = null;
+            boolean hit = true;
 
             switch (event.getAction()) {
                 case MotionEvent.ACTION_DOWN:
-                    for (int i = 0; i < mTouchDelegates.size(); i++) {
-                        TouchDelegate touchDelegate = mTouchDelegates.get(i);
-                        if (touchDelegate.onTouchEvent(event)) {
-                            mCurrentTouchDelegate = touchDelegate;
-                            return true;
-                        }
+                    int area = mTouchTargets.find(x, y);
+                    if (area != -1) {
+                        mTouchTargets.getArea(area, mCurrentArea);
+                        mCurrentTarget = mTargetViews[mTouchTargets.getTarget(area)];
+                        target = mCurrentTarget;
                     }
                     break;
 
                 case MotionEvent.ACTION_MOVE:
-                    delegate = mCurrentTouchDelegate;
+                case MotionEvent.ACTION_UP:
+                    target = mCurrentTarget;
+                    hit = x >= mCurrentArea[0] - mSlop && x < mCurrentArea[2] + mSlop
+                            && y >= mCurrentArea[1] - mSlop && y < mCurrentArea[3] + mSlop;
+                    if (event.getAction() == MotionEvent.ACTION_UP) {
+                        mCurrentTarget = null;
+                    }
                     break;
 
                 case MotionEvent.ACTION_CANCEL:
-                case MotionEvent.ACTION_UP:
-                    delegate = mCurrentTouchDelegate;
-                    mCurrentTouchDelegate = null;
+                    target = mCurrentTarget;
+                    mCurrentTarget = null;
                     break;
             }
 
-            return delegate != null && delegate.onTouchEvent(event);
+            if (target == null) {
+                return false;
+            }
+
+            // Same event forwarding as TouchDelegate, without needing one per target
+            if (hit) {
+                event.setLocation(target.getWidth() / 2, target.getHeight() / 2);
+            } else {
+                event.setLocation(-(mSlop * 2), -(mSlop * 2));
+            }
+            return target.dispatchTouchEvent(event);
         }
 
         void setEnabled(boolean enabled) {
             mEnabled = enabled;
         }
 
-        void addTouchDelegate(@NonNull TouchDelegate touchDelegate) {
-            mTouchDelegates.add(touchDelegate);
+        void addTouchTarget(@NonNull View target, int left, int top, int right, int bottom) {
+            int index = mTouchTargets.size();
+            if (mTargetViews.length == index) {
+                View[] targetViews = new View[Math.max(8, index * 2)];
+                System.arraycopy(mTargetViews, 0, targetViews, 0, index);
+                mTargetViews = targetViews;
+            }
+            mTargetViews[index] = target;
+            mTouchTargets.add(left, top, right, bottom, index);
         }
 
-        void removeTouchDelegate(TouchDelegate touchDelegate) {
-            mTouchDelegates.remove(touchDelegate);
-            if (mCurrentTouchDelegate == touchDelegate) {
-                mCurrentTouchDelegate = null;
+        void clearTouchTargets() {
+            // An in flight gesture keeps its target and area until it ends
+            for (int i = 0, count = mTouchTargets.size(); i < count; i++) {
+                mTargetViews[i] = null;
             }
+            mTouchTargets.clear();
+        }
+
+        void buildTouchTargets() {
+            mTouchTargets.build();
         }
 
-        void clearTouchDelegates() {
-            mTouchDelegates.clear();
-            mCurrentTouchDelegate = null;
+        int getTouchTargetCount() {
+            return mTouchTargets.size();
         }
     }
 
     public static class Behavior extends CoordinatorLayout.Behavior<GFFloatingActionMenu> {
 
+        private static final int VISIBILITY_HYSTERESIS_DP = 8;
+
         private Rect mTmpRect;
 
         public Behavior() {
@@ -1128,6 +2846,40 @@ public class GFFloatingActionMenu extends ViewGroup {
             }
         }
 
+        @Override
+        public int getScrimColor(CoordinatorLayout parent, GFFloatingActionMenu child) {
+            return child.getDimWhenExpandedColor();
+        }
+
+        @Override
+        public float getScrimOpacity(CoordinatorLayout parent, GFFloatingActionMenu child) {
+            return child.getScrimOpacity();
+        }
+
+        @Override
+        public boolean blocksInteractionBelow(CoordinatorLayout parent, GFFloatingActionMenu child) {
+            return child.isExpanded() && child.dimWhenExpanded();
+        }
+
+        @Override
+        public boolean onInterceptTouchEvent(CoordinatorLayout parent, GFFloatingActionMenu child, MotionEvent ev) {
+            // Taps on the scrim collapse the menu instead of reaching the views below it
+            return ev.getActionMasked() == MotionEvent.ACTION_DOWN && blocksInteractionBelow(parent, child)
+                    && !parent.isPointInChildBounds(child, (int) ev.getX(), (int) ev.getY());
+        }
+
+        @Override
+        public boolean onTouchEvent(CoordinatorLayout parent, GFFloatingActionMenu child, MotionEvent ev) {
+            if (!blocksInteractionBelow(parent, child)) {
+                return false;
+            }
+
+            if (ev.getActionMasked() == MotionEvent.ACTION_UP) {
+                child.collapse();
+            }
+            return true;
+        }
+
         @Override
         public boolean onDependentViewChanged(CoordinatorLayout parent, GFFloatingActionMenu child, View dependency) {
             if (dependency instanceof AppBarLayout) {
@@ -1181,10 +2933,16 @@ public class GFFloatingActionMenu extends ViewGroup {
             final Rect rect = mTmpRect;
             getDescendantRect(parent, appBarLayout, rect);
 
-            if (rect.bottom < getMinimumHeightForVisibleOverlappingContent(appBarLayout)) {
+            // Scroll frames land here continuously, so only crossings change anything and the menu
+            // has to scroll back past a margin before it shows again, avoiding flicker at the edge
+            final int minHeight = getMinimumHeightForVisibleOverlappingContent(appBarLayout);
+            if (child.isHidden()) {
+                final float hysteresis = VISIBILITY_HYSTERESIS_DP * appBarLayout.getResources().getDisplayMetrics().density;
+                if (rect.bottom >= Math.min(minHeight + hysteresis, appBarLayout.getHeight())) {
+                    child.show();
+                }
+            } else if (rect.bottom < minHeight) {
                 child.hide();
-            } else {
-                child.show();
             }
             return true;
         }
@@ -0,0 +1,80 @@
+package com.github.gfranks.floatingactionmenu;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.ColorInt;
+import android.support.annotation.DrawableRes;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.graphics.drawable.DrawableCompat;
+import android.util.LruCache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide cache of tinted icons keyed by drawable resource and tint. Only the
+ * {@link Drawable.ConstantState} is kept, every call returns a new mutated drawable created from
+ * it, so menus and buttons using the same icon decode and tint it once and can still change their
+ * own copy. Entries are dropped when the density or UI mode (e.g. night mode) changes, since the
+ * resource may resolve differently. Safe to use from any thread.
+ */
+public final class GFTintedIconCache {
+
+    private static final int MAX_SIZE = 32;
+
+    private static final LruCache<Long, Entry> sEntries = new LruCache<>(MAX_SIZE);
+    private static final AtomicInteger sHitCount = new AtomicInteger();
+    private static final AtomicInteger sMissCount = new AtomicInteger();
+
+    private GFTintedIconCache() {
+    }
+
+    public static Drawable get(Context context, @DrawableRes int drawableResId, @ColorInt int tint) {
+        Long key = ((long) drawableResId << 32) | (tint & 0xFFFFFFFFL);
+        Resources res = context.getResources();
+        int density = res.getDisplayMetrics().densityDpi;
+        int uiMode = res.getConfiguration().uiMode;
+        Entry entry = sEntries.get(key);
+        if (entry != null && entry.mDensity == density && entry.mUiMode == uiMode) {
+            sHitCount.incrementAndGet();
+            return entry.mState.newDrawable(res).mutate();
+        }
+
+        sMissCount.incrementAndGet();
+        // Mutated first so the tint does not leak into other users of the resource
+        Drawable drawable = DrawableCompat.wrap(ContextCompat.getDrawable(context, drawableResId).mutate());
+        DrawableCompat.setTint(drawable, tint);
+        Drawable.ConstantState state = drawable.getConstantState();
+        if (state == null) {
+            return drawable;
+        }
+        sEntries.put(key, new Entry(state, density, uiMode));
+        // The cached state must not be shared with a drawable the caller may change
+        return state.newDrawable(res).mutate();
+    }
+
+    public static int getHitCount() {
+        return sHitCount.get();
+    }
+
+    public static int getMissCount() {
+        return sMissCount.get();
+    }
+
+    public static void clear() {
+        sEntries.evictAll();
+    }
+
+    private static class Entry {
+
+        private final Drawable.ConstantState mState;
+        private final int mDensity;
+        private final int mUiMode;
+
+        Entry(Drawable.ConstantState state, int density, int uiMode) {
+            mState = state;
+            mDensity = density;
+            mUiMode = uiMode;
+        }
+    }
+}
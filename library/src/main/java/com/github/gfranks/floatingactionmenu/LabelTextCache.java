@@ -0,0 +1,61 @@
+package com.github.gfranks.floatingactionmenu;
+
+import android.os.AsyncTask;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of label text layouts keyed by text, label style and wrap width. Layouts are
+ * built on a background thread ahead of time, which also warms the platform's shaping cache, so
+ * the label TextViews measured on the main thread later find their glyphs already laid out.
+ */
+final class LabelTextCache {
+
+    private static final int MAX_SIZE = 64;
+
+    private static final LruCache<String, Layout> sLayouts = new LruCache<>(MAX_SIZE);
+
+    private LabelTextCache() {
+    }
+
+    /**
+     * Returns the cached layout or builds and caches it on the calling thread.
+     */
+    static Layout obtain(CharSequence text, int style, int width, TextPaint paint) {
+        String key = key(text, style, width, paint);
+        Layout layout = sLayouts.get(key);
+        if (layout == null) {
+            layout = new StaticLayout(text, new TextPaint(paint), width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+            sLayouts.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Builds the layout in the background unless it is cached already. The paint is copied, so
+     * the caller may keep using it.
+     */
+    static void prefetch(final CharSequence text, int style, final int width, TextPaint paint) {
+        final String key = key(text, style, width, paint);
+        if (sLayouts.get(key) != null) {
+            return;
+        }
+
+        final TextPaint layoutPaint = new TextPaint(paint);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (sLayouts.get(key) == null) {
+                    sLayouts.put(key, new StaticLayout(text, layoutPaint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true));
+                }
+            }
+        });
+    }
+
+    private static String key(CharSequence text, int style, int width, TextPaint paint) {
+        // The style id alone misses the density and font scale it was resolved with
+        return style + ":" + width + ":" + paint.getTextSize() + ":" + text;
+    }
+}
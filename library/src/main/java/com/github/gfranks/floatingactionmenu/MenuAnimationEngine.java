@@ -0,0 +1,156 @@
+package com.github.gfranks.floatingactionmenu;
+
+/**
+ * Expand and collapse frames for every item of {@link GFFloatingActionMenu} from one animated
+ * fraction, so a single animator drives the whole menu. Items are described by primitive arrays
+ * indexed like the menu's children and each frame is written into arrays the menu only has to
+ * apply. The curves match the platform interpolators the per-item animators used: overshoot for
+ * expanding translations, decelerate for expanding alpha and a stronger decelerate for collapsing.
+ * <p>
+ * With a stagger, items start one after another by their distance from the menu button, nearest
+ * first when expanding and farthest first when collapsing, and share what is left of the duration.
+ */
+final class MenuAnimationEngine {
+
+    // OvershootInterpolator's default tension and DecelerateInterpolator(3f)'s doubled factor
+    private static final float OVERSHOOT_TENSION = 2f;
+    private static final int COLLAPSE_DECELERATE_POWER = 6;
+
+    private float mStagger;
+
+    private int mCount;
+    private float[] mCollapsedX = new float[0];
+    private float[] mCollapsedY = new float[0];
+    private float[] mDistances = new float[0];
+    private float mMaxDistance;
+    private boolean mDistancesValid;
+
+    private float[] mTranslationX = new float[0];
+    private float[] mTranslationY = new float[0];
+    private float[] mAlpha = new float[0];
+
+    /**
+     * Sets the share of the duration, from 0 to 1, that item start times are spread over.
+     */
+    void setStagger(float stagger) {
+        mStagger = Math.max(0f, Math.min(1f, stagger));
+    }
+
+    float getStagger() {
+        return mStagger;
+    }
+
+    void setItemCount(int count) {
+        if (mCollapsedX.length < count) {
+            mCollapsedX = grow(mCollapsedX, count);
+            mCollapsedY = grow(mCollapsedY, count);
+            mDistances = new float[count];
+            mTranslationX = new float[count];
+            mTranslationY = new float[count];
+            mAlpha = new float[count];
+        }
+        mCount = count;
+        mDistancesValid = false;
+    }
+
+    int getItemCount() {
+        return mCount;
+    }
+
+    void setCollapsedTranslation(int index, float x, float y) {
+        if (mCollapsedX[index] != x || mCollapsedY[index] != y) {
+            mCollapsedX[index] = x;
+            mCollapsedY[index] = y;
+            mDistancesValid = false;
+        }
+    }
+
+    /**
+     * @return the fraction of the duration after which the item starts moving
+     */
+    float getItemStart(int index, boolean expanding) {
+        if (mStagger == 0f) {
+            return 0f;
+        }
+
+        ensureDistances();
+        float order = mMaxDistance > 0f ? mDistances[index] / mMaxDistance : 0f;
+        return mStagger * (expanding ? order : 1f - order);
+    }
+
+    /**
+     * @return the fraction of the duration every item spends moving
+     */
+    float getItemSpan() {
+        return 1f - mStagger;
+    }
+
+    /**
+     * Computes every item for {@code fraction}, the linear progress of the whole animation.
+     */
+    void computeFrame(float fraction, boolean expanding) {
+        float span = getItemSpan();
+        for (int i = 0; i < mCount; i++) {
+            float t = span > 0f ? (fraction - getItemStart(i, expanding)) / span : 1f;
+            t = t < 0f ? 0f : t > 1f ? 1f : t;
+
+            if (expanding) {
+                // Offset from the expanded position, which is no translation
+                float remaining = 1f - overshoot(t);
+                mTranslationX[i] = mCollapsedX[i] * remaining;
+                mTranslationY[i] = mCollapsedY[i] * remaining;
+                mAlpha[i] = 1f - (1f - t) * (1f - t);
+            } else {
+                float progress = collapseDecelerate(t);
+                mTranslationX[i] = mCollapsedX[i] * progress;
+                mTranslationY[i] = mCollapsedY[i] * progress;
+                mAlpha[i] = 1f - progress;
+            }
+        }
+    }
+
+    float getTranslationX(int index) {
+        return mTranslationX[index];
+    }
+
+    float getTranslationY(int index) {
+        return mTranslationY[index];
+    }
+
+    float getAlpha(int index) {
+        return mAlpha[index];
+    }
+
+    private void ensureDistances() {
+        if (mDistancesValid) {
+            return;
+        }
+
+        mMaxDistance = 0f;
+        for (int i = 0; i < mCount; i++) {
+            mDistances[i] = (float) Math.hypot(mCollapsedX[i], mCollapsedY[i]);
+            mMaxDistance = Math.max(mMaxDistance, mDistances[i]);
+        }
+        mDistancesValid = true;
+    }
+
+    private static float overshoot(float t) {
+        t -= 1f;
+        return t * t * ((OVERSHOOT_TENSION + 1f) * t + OVERSHOOT_TENSION) + 1f;
+    }
+
+    private static float collapseDecelerate(float t) {
+        float remaining = 1f - t;
+        float result = 1f;
+        for (int i = 0; i < COLLAPSE_DECELERATE_POWER; i++) {
+            result *= remaining;
+        }
+        return 1f - result;
+    }
+
+    private static float[] grow(float[] array, int capacity) {
+        float[] grown = new float[capacity];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.gfranks.floatingactionmenu;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
+import android.support.annotation.MenuRes;
+import android.util.AttributeSet;
+import android.util.Xml;
+import android.view.InflateException;
+import android.view.View;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+/**
+ * Menu actions parsed from a menu resource, kept as parallel arrays so large menus cost a few
+ * arrays until their buttons are actually needed. Items nested in groups or sub menus are
+ * flattened in document order.
+ */
+final class MenuItems {
+
+    // Transparent is a valid tint, so whether one was set is kept apart from the color
+    private static final int FLAG_BACKGROUND_TINT = 1;
+    private static final int FLAG_ICON_TINT = 2;
+
+    private int mCount;
+    private int[] mIds = new int[0];
+    private int[] mIcons = new int[0];
+    private CharSequence[] mTitles = new CharSequence[0];
+    private int[] mBackgroundTints = new int[0];
+    private int[] mIconTints = new int[0];
+    private int[] mFlags = new int[0];
+
+    static MenuItems inflate(Context context, @MenuRes int menuRes) {
+        MenuItems items = new MenuItems();
+        XmlResourceParser parser = context.getResources().getXml(menuRes);
+        try {
+            AttributeSet attrs = Xml.asAttributeSet(parser);
+            int event;
+            while ((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (event != XmlPullParser.START_TAG || !"item".equals(parser.getName())) {
+                    continue;
+                }
+
+                TypedArray attr = context.obtainStyledAttributes(attrs, R.styleable.GFFloatingActionMenuItem);
+                int flags = 0;
+                if (attr.hasValue(R.styleable.GFFloatingActionMenuItem_fam_itemBackgroundTint)) {
+                    flags |= FLAG_BACKGROUND_TINT;
+                }
+                if (attr.hasValue(R.styleable.GFFloatingActionMenuItem_fam_itemIconTint)) {
+                    flags |= FLAG_ICON_TINT;
+                }
+                items.add(attr.getResourceId(R.styleable.GFFloatingActionMenuItem_android_id, View.NO_ID),
+                        attr.getResourceId(R.styleable.GFFloatingActionMenuItem_android_icon, 0),
+                        attr.getText(R.styleable.GFFloatingActionMenuItem_android_title),
+                        attr.getColor(R.styleable.GFFloatingActionMenuItem_fam_itemBackgroundTint, 0),
+                        attr.getColor(R.styleable.GFFloatingActionMenuItem_fam_itemIconTint, 0), flags);
+                attr.recycle();
+            }
+        } catch (XmlPullParserException | IOException e) {
+            throw new InflateException("Error inflating menu XML", e);
+        } finally {
+            parser.close();
+        }
+        return items;
+    }
+
+    private void add(int id, int icon, CharSequence title, int backgroundTint, int iconTint, int flags) {
+        if (mIds.length == mCount) {
+            int capacity = Math.max(8, mCount * 2);
+            mIds = grow(mIds, capacity);
+            mIcons = grow(mIcons, capacity);
+            mBackgroundTints = grow(mBackgroundTints, capacity);
+            mIconTints = grow(mIconTints, capacity);
+            mFlags = grow(mFlags, capacity);
+            CharSequence[] titles = new CharSequence[capacity];
+            System.arraycopy(mTitles, 0, titles, 0, mCount);
+            mTitles = titles;
+        }
+
+        mIds[mCount] = id;
+        mIcons[mCount] = icon;
+        mTitles[mCount] = title;
+        mBackgroundTints[mCount] = backgroundTint;
+        mIconTints[mCount] = iconTint;
+        mFlags[mCount] = flags;
+        mCount++;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    int size() {
+        return mCount;
+    }
+
+    int getId(int index) {
+        return mIds[index];
+    }
+
+    int getIcon(int index) {
+        return mIcons[index];
+    }
+
+    CharSequence getTitle(int index) {
+        return mTitles[index];
+    }
+
+    boolean hasBackgroundTint(int index) {
+        return (mFlags[index] & FLAG_BACKGROUND_TINT) != 0;
+    }
+
+    int getBackgroundTint(int index) {
+        return mBackgroundTints[index];
+    }
+
+    boolean hasIconTint(int index) {
+        return (mFlags[index] & FLAG_ICON_TINT) != 0;
+    }
+
+    int getIconTint(int index) {
+        return mIconTints[index];
+    }
+}
@@ -0,0 +1,504 @@
+package com.github.gfranks.floatingactionmenu;
+
+/**
+ * Position math for {@link GFFloatingActionMenu}, kept free of Android dependencies so it can be
+ * exercised on a plain JVM. Items are described by primitive arrays indexed like the menu's
+ * children and results are written into packed arrays that the menu only has to apply.
+ */
+final class MenuLayoutEngine {
+
+    // Mirrors GFFloatingActionMenu.ExpandDirection
+    static final int EXPAND_UP = 0;
+    static final int EXPAND_DOWN = 1;
+    static final int EXPAND_LEFT = 2;
+    static final int EXPAND_RIGHT = 3;
+    static final int EXPAND_ARC_LEFT_UP = 4;
+    static final int EXPAND_ARC_LEFT_DOWN = 5;
+    static final int EXPAND_ARC_RIGHT_UP = 6;
+    static final int EXPAND_ARC_RIGHT_DOWN = 7;
+
+    // Mirrors GFFloatingActionMenu.LabelPosition
+    static final int LABELS_LEFT = 0;
+    static final int LABELS_RIGHT = 1;
+
+    static final int FLAG_GONE = 1;
+    static final int FLAG_MENU_BUTTON = 1 << 1;
+    static final int FLAG_HAS_LABEL = 1 << 2;
+
+    // left, top, right, bottom
+    static final int BOUNDS_STRIDE = 4;
+    // x, y
+    static final int TRANSLATION_STRIDE = 2;
+
+    private int mExpandDirection = EXPAND_UP;
+    private int mLabelsPosition = LABELS_LEFT;
+    private int mButtonSpacing;
+    private int mLabelsMargin;
+
+    private int mCount;
+    private int[] mWidths = new int[0];
+    private int[] mHeights = new int[0];
+    private int[] mFlags = new int[0];
+    private int[] mLabelWidths = new int[0];
+    private int[] mLabelHeights = new int[0];
+
+    private int mMaxButtonWidth;
+    private int mMaxButtonHeight;
+    private int mMaxLabelWidth;
+    private int mLabelsXNearButton;
+    private int mMeasuredWidth;
+    private int mMeasuredHeight;
+
+    private final int[] mMenuButtonBounds = new int[BOUNDS_STRIDE];
+    private int[] mChildBounds = new int[0];
+    private int[] mLabelBounds = new int[0];
+    private float[] mCollapsedTranslations = new float[0];
+
+    // Arc geometry only depends on the item count, direction and max button size, so the unit
+    // vectors and final offsets are kept until one of those changes
+    private int mArcCount = -1;
+    private int mArcDirection = -1;
+    private int mArcMaxButtonWidth = -1;
+    private int mArcMaxButtonHeight = -1;
+    private double[] mArcCos = new double[0];
+    private double[] mArcSin = new double[0];
+    private int[] mArcOffsetX = new int[0];
+    private int[] mArcOffsetY = new int[0];
+
+    void setExpandDirection(int expandDirection) {
+        mExpandDirection = expandDirection;
+    }
+
+    int getExpandDirection() {
+        return mExpandDirection;
+    }
+
+    void setLabelsPosition(int labelsPosition) {
+        mLabelsPosition = labelsPosition;
+    }
+
+    void setButtonSpacing(int buttonSpacing) {
+        mButtonSpacing = buttonSpacing;
+    }
+
+    void setLabelsMargin(int labelsMargin) {
+        mLabelsMargin = labelsMargin;
+    }
+
+    /**
+     * Supplies the items to measure and lay out. The arrays are read, not copied, so they must stay
+     * untouched until the next call. Label sizes are only read for items flagged with
+     * {@link #FLAG_HAS_LABEL}.
+     */
+    void setItems(int count, int[] widths, int[] heights, int[] flags, int[] labelWidths, int[] labelHeights) {
+        mCount = count;
+        mWidths = widths;
+        mHeights = heights;
+        mFlags = flags;
+        mLabelWidths = labelWidths;
+        mLabelHeights = labelHeights;
+
+        if (mChildBounds.length < count * BOUNDS_STRIDE) {
+            mChildBounds = new int[count * BOUNDS_STRIDE];
+            mLabelBounds = new int[count * BOUNDS_STRIDE];
+            mCollapsedTranslations = new float[count * TRANSLATION_STRIDE];
+        }
+    }
+
+    void measure() {
+        int width = 0;
+        int height = 0;
+
+        mMaxButtonWidth = 0;
+        mMaxButtonHeight = 0;
+        int maxLabelWidth = 0;
+
+        for (int i = 0; i < mCount; i++) {
+            if ((mFlags[i] & FLAG_GONE) != 0) {
+                continue;
+            }
+
+            switch (mExpandDirection) {
+                case EXPAND_UP:
+                case EXPAND_DOWN:
+                    mMaxButtonWidth = Math.max(mMaxButtonWidth, mWidths[i]);
+                    height += mHeights[i];
+                    break;
+                case EXPAND_LEFT:
+                case EXPAND_RIGHT:
+                    width += mWidths[i];
+                    mMaxButtonHeight = Math.max(mMaxButtonHeight, mHeights[i]);
+                    break;
+                case EXPAND_ARC_LEFT_UP:
+                case EXPAND_ARC_LEFT_DOWN:
+                case EXPAND_ARC_RIGHT_UP:
+                case EXPAND_ARC_RIGHT_DOWN:
+                    mMaxButtonWidth = Math.max(mMaxButtonWidth, mWidths[i]);
+                    height += mHeights[i];
+                    width += mWidths[i];
+                    mMaxButtonHeight = Math.max(mMaxButtonHeight, mHeights[i]);
+                    break;
+            }
+
+            if (expandsVertically() && (mFlags[i] & FLAG_HAS_LABEL) != 0) {
+                maxLabelWidth = Math.max(maxLabelWidth, mLabelWidths[i]);
+            }
+        }
+
+        if (expandsHorizontally()) {
+            height = mMaxButtonHeight;
+        } else if (expandsVertically()) {
+            width = mMaxButtonWidth + (maxLabelWidth > 0 ? maxLabelWidth + mLabelsMargin : 0);
+        } else {
+            height = mMaxButtonHeight;
+            width = mMaxButtonWidth;
+        }
+
+        switch (mExpandDirection) {
+            case EXPAND_UP:
+            case EXPAND_DOWN:
+                height += mButtonSpacing * (mCount - 1);
+                height = adjustForOvershoot(height);
+                break;
+            case EXPAND_LEFT:
+            case EXPAND_RIGHT:
+                width += mButtonSpacing * (mCount - 1);
+                width = adjustForOvershoot(width);
+                break;
+            case EXPAND_ARC_LEFT_UP:
+            case EXPAND_ARC_LEFT_DOWN:
+            case EXPAND_ARC_RIGHT_UP:
+            case EXPAND_ARC_RIGHT_DOWN:
+                height += mButtonSpacing * mCount * 2;
+                height = adjustForOvershoot(height);
+                width += mButtonSpacing * mCount * 2;
+                width = adjustForOvershoot(width);
+                break;
+        }
+
+        mMaxLabelWidth = maxLabelWidth;
+        mMeasuredWidth = width;
+        mMeasuredHeight = height;
+    }
+
+    /**
+     * Positions every item inside the given (already padded) bounds. {@code anchorOffset} is the
+     * distance the menu button is shifted towards the center when anchored to an AppBarLayout.
+     */
+    void layout(int l, int t, int r, int b, int menuButtonWidth, int menuButtonHeight, int anchorOffset) {
+        switch (mExpandDirection) {
+            case EXPAND_UP:
+            case EXPAND_DOWN: {
+                boolean expandUp = mExpandDirection == EXPAND_UP;
+
+                int addButtonY;
+                if (expandUp) {
+                    addButtonY = adjustForAnchor(b - t - menuButtonHeight, anchorOffset);
+                } else {
+                    addButtonY = adjustForAnchor(t, anchorOffset);
+                }
+                // Ensure the menu button is centered on the line where the buttons should be
+                int buttonsHorizontalCenter = mLabelsPosition == LABELS_LEFT
+                        ? r - l - mMaxButtonWidth / 2
+                        : mMaxButtonWidth / 2;
+
+                int addButtonLeft = (buttonsHorizontalCenter - menuButtonWidth / 2);
+                setBounds(mMenuButtonBounds, 0, addButtonLeft, addButtonY, menuButtonWidth, menuButtonHeight);
+
+                int labelsOffset = mMaxButtonWidth / 2 + mLabelsMargin;
+                mLabelsXNearButton = mLabelsPosition == LABELS_LEFT
+                        ? buttonsHorizontalCenter - labelsOffset
+                        : buttonsHorizontalCenter + labelsOffset;
+
+                int nextY = expandUp ?
+                        addButtonY - mButtonSpacing :
+                        addButtonY + menuButtonHeight + mButtonSpacing;
+
+                for (int i = mCount - 1; i >= 0; i--) {
+                    if (isSkipped(i)) continue;
+
+                    int childX = (buttonsHorizontalCenter - mWidths[i] / 2);
+                    int childY;
+                    if (expandUp) {
+                        childY = nextY - mHeights[i];
+                    } else {
+                        childY = nextY;
+                    }
+                    setBounds(mChildBounds, i, childX, childY, mWidths[i], mHeights[i]);
+                    setCollapsedTranslation(i, 0f, addButtonY - childY);
+
+                    if ((mFlags[i] & FLAG_HAS_LABEL) != 0) {
+                        layoutLabel(i);
+                    }
+
+                    nextY = expandUp ?
+                            childY - mButtonSpacing :
+                            childY + mHeights[i] + mButtonSpacing;
+                }
+                break;
+            }
+            case EXPAND_LEFT:
+            case EXPAND_RIGHT: {
+                boolean expandLeft = mExpandDirection == EXPAND_LEFT;
+
+                int addButtonX;
+                if (expandLeft) {
+                    addButtonX = r - l - menuButtonWidth;
+                } else {
+                    addButtonX = l;
+                }
+                // Ensure the menu button is centered on the line where the buttons should be
+                int addButtonTop = adjustForAnchor(b - t - mMaxButtonHeight + (mMaxButtonHeight - menuButtonHeight) / 2, anchorOffset);
+                setBounds(mMenuButtonBounds, 0, addButtonX, addButtonTop, menuButtonWidth, menuButtonHeight);
+
+                int nextX = expandLeft ?
+                        addButtonX - mButtonSpacing :
+                        addButtonX + menuButtonWidth + mButtonSpacing;
+
+                for (int i = mCount - 1; i >= 0; i--) {
+                    if (isSkipped(i)) continue;
+
+                    int childX;
+                    if (expandLeft) {
+                        childX = nextX - mWidths[i];
+                    } else {
+                        childX = nextX;
+                    }
+                    int childY = addButtonTop + (menuButtonHeight - mHeights[i]) / 2;
+                    setBounds(mChildBounds, i, childX, childY, mWidths[i], mHeights[i]);
+                    setCollapsedTranslation(i, addButtonX - childX, 0f);
+
+                    nextX = expandLeft ?
+                            childX - mButtonSpacing :
+                            childX + mWidths[i] + mButtonSpacing;
+                }
+                break;
+            }
+            case EXPAND_ARC_LEFT_DOWN:
+            case EXPAND_ARC_LEFT_UP:
+            case EXPAND_ARC_RIGHT_UP:
+            case EXPAND_ARC_RIGHT_DOWN: {
+                boolean expandLeft = mExpandDirection == EXPAND_ARC_LEFT_UP || mExpandDirection == EXPAND_ARC_LEFT_DOWN;
+                boolean expandUp = mExpandDirection == EXPAND_ARC_LEFT_UP || mExpandDirection == EXPAND_ARC_RIGHT_UP;
+
+                int addButtonX;
+                if (expandLeft) {
+                    addButtonX = r - l - menuButtonWidth;
+                } else {
+                    addButtonX = l;
+                }
+                int addButtonY;
+                if (expandUp) {
+                    addButtonY = adjustForAnchor(b - t - menuButtonHeight, anchorOffset);
+                } else {
+                    addButtonY = adjustForAnchor(t, anchorOffset);
+                }
+                setBounds(mMenuButtonBounds, 0, addButtonX, addButtonY, menuButtonWidth, menuButtonHeight);
+
+                updateArcGeometry();
+
+                int leftPoint, topPoint, left, top;
+                for (int i = 0; i < mCount; i++) {
+                    if (isSkipped(i)) continue;
+
+                    leftPoint = mArcOffsetX[i];
+                    topPoint = mArcOffsetY[i];
+
+                    if (expandLeft) {
+                        left = addButtonX - leftPoint;
+                        if (expandUp) {
+                            top = addButtonY - topPoint;
+                        } else {
+                            top = addButtonY + topPoint;
+                        }
+                    } else {
+                        left = addButtonX + leftPoint;
+                        if (expandUp) {
+                            top = addButtonY + topPoint;
+                        } else {
+                            top = addButtonY - topPoint;
+                        }
+                    }
+
+                    setBounds(mChildBounds, i, left, top, mWidths[i], mHeights[i]);
+                    setCollapsedTranslation(i, addButtonX - left, addButtonY - top);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * How many items of {@code itemExtent} fit next to the menu button within {@code available}
+     * pixels along the expand axis, always at least one.
+     */
+    int computeCapacity(int available, int itemExtent, int menuButtonExtent) {
+        // Inverse of adjustForOvershoot
+        int usable = available * 10 / 12 - menuButtonExtent;
+        int capacity;
+        switch (mExpandDirection) {
+            case EXPAND_ARC_LEFT_UP:
+            case EXPAND_ARC_LEFT_DOWN:
+            case EXPAND_ARC_RIGHT_UP:
+            case EXPAND_ARC_RIGHT_DOWN:
+                capacity = mButtonSpacing > 0 ? usable / (mButtonSpacing * 2) - 1 : Integer.MAX_VALUE;
+                break;
+            default:
+                capacity = usable / Math.max(1, itemExtent + mButtonSpacing);
+                break;
+        }
+        return Math.max(1, capacity);
+    }
+
+    /**
+     * Repositions a single label after its size changed, relative to where the last
+     * {@link #layout} put its item. Only valid for vertical expand directions and as long as the
+     * label is not wider than {@link #getMaxLabelWidth()}, otherwise the menu needs a full pass.
+     */
+    void layoutLabel(int index) {
+        int labelXAwayFromButton = mLabelsPosition == LABELS_LEFT
+                ? mLabelsXNearButton - mLabelWidths[index]
+                : mLabelsXNearButton + mLabelWidths[index];
+
+        int labelLeft;
+        if (mLabelsPosition == LABELS_LEFT) {
+            labelLeft = labelXAwayFromButton;
+        } else {
+            labelLeft = mLabelsXNearButton;
+        }
+
+        int childY = mChildBounds[index * BOUNDS_STRIDE + 1];
+        int labelTop = childY + (mHeights[index] - mLabelHeights[index]) / 2;
+        setBounds(mLabelBounds, index, labelLeft, labelTop, mLabelWidths[index], mLabelHeights[index]);
+    }
+
+    int getMaxLabelWidth() {
+        return mMaxLabelWidth;
+    }
+
+    int getMeasuredWidth() {
+        return mMeasuredWidth;
+    }
+
+    int getMeasuredHeight() {
+        return mMeasuredHeight;
+    }
+
+    int getMaxButtonWidth() {
+        return mMaxButtonWidth;
+    }
+
+    int getMaxButtonHeight() {
+        return mMaxButtonHeight;
+    }
+
+    /**
+     * Bounds of the menu button, packed as left, top, right, bottom.
+     */
+    int[] getMenuButtonBounds() {
+        return mMenuButtonBounds;
+    }
+
+    /**
+     * Bounds of every laid out item, {@link #BOUNDS_STRIDE} ints per item index.
+     */
+    int[] getChildBounds() {
+        return mChildBounds;
+    }
+
+    /**
+     * Bounds of every laid out label, {@link #BOUNDS_STRIDE} ints per item index.
+     */
+    int[] getLabelBounds() {
+        return mLabelBounds;
+    }
+
+    /**
+     * Translation that moves an item (and its label) onto the menu button while collapsed,
+     * {@link #TRANSLATION_STRIDE} floats per item index. The expanded translation is always zero.
+     */
+    float[] getCollapsedTranslations() {
+        return mCollapsedTranslations;
+    }
+
+    boolean isSkipped(int index) {
+        return (mFlags[index] & (FLAG_GONE | FLAG_MENU_BUTTON)) != 0;
+    }
+
+    boolean expandsHorizontally() {
+        return mExpandDirection == EXPAND_LEFT || mExpandDirection == EXPAND_RIGHT;
+    }
+
+    boolean expandsVertically() {
+        return mExpandDirection == EXPAND_UP || mExpandDirection == EXPAND_DOWN;
+    }
+
+    private void updateArcGeometry() {
+        boolean directionChanged = mArcCount != mCount || mArcDirection != mExpandDirection;
+        if (directionChanged) {
+            if (mArcCos.length < mCount) {
+                mArcCos = new double[mCount];
+                mArcSin = new double[mCount];
+                mArcOffsetX = new int[mCount];
+                mArcOffsetY = new int[mCount];
+            }
+
+            boolean expandLeft = mExpandDirection == EXPAND_ARC_LEFT_UP || mExpandDirection == EXPAND_ARC_LEFT_DOWN;
+            double eachAngle;
+            if (mCount == 1) {
+                eachAngle = 0;
+            } else {
+                int angle;
+                if (expandLeft) {
+                    angle = 90;
+                } else {
+                    angle = -90;
+                }
+                eachAngle = (double) angle / (mCount - 2);
+            }
+
+            for (int i = 0; i < mCount; i++) {
+                double totalAngleForChild = Math.toRadians(eachAngle * (i));
+                mArcCos[i] = Math.cos(totalAngleForChild);
+                mArcSin[i] = Math.sin(totalAngleForChild);
+            }
+
+            mArcCount = mCount;
+            mArcDirection = mExpandDirection;
+        }
+
+        if (directionChanged || mArcMaxButtonWidth != mMaxButtonWidth || mArcMaxButtonHeight != mMaxButtonHeight) {
+            for (int i = 0; i < mCount; i++) {
+                mArcOffsetX[i] = (int) (((mMaxButtonWidth * mCount) * mArcCos[i]) / 2);
+                mArcOffsetY[i] = (int) (((mMaxButtonHeight * mCount) * mArcSin[i]) / 2);
+            }
+
+            mArcMaxButtonWidth = mMaxButtonWidth;
+            mArcMaxButtonHeight = mMaxButtonHeight;
+        }
+    }
+
+    private int adjustForAnchor(int initialY, int anchorOffset) {
+        if (mExpandDirection == EXPAND_UP || mExpandDirection == EXPAND_ARC_LEFT_UP || mExpandDirection == EXPAND_ARC_RIGHT_UP) {
+            return initialY - anchorOffset;
+        }
+        return initialY + anchorOffset;
+    }
+
+    private void setCollapsedTranslation(int index, float x, float y) {
+        mCollapsedTranslations[index * TRANSLATION_STRIDE] = x;
+        mCollapsedTranslations[index * TRANSLATION_STRIDE + 1] = y;
+    }
+
+    private static void setBounds(int[] bounds, int index, int left, int top, int width, int height) {
+        int offset = index * BOUNDS_STRIDE;
+        bounds[offset] = left;
+        bounds[offset + 1] = top;
+        bounds[offset + 2] = left + width;
+        bounds[offset + 3] = top + height;
+    }
+
+    private static int adjustForOvershoot(int dimension) {
+        return dimension * 12 / 10;
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.gfranks.floatingactionmenu;
+
+/**
+ * Damped springs moving a set of items between collapsed (0) and expanded (1) progress. Every item
+ * keeps its own position and velocity, so changing the target mid-flight continues from wherever
+ * the items are instead of restarting from an endpoint. Steps use the closed form solution of the
+ * spring, which stays stable for any frame length, and the coefficients are shared by all items.
+ */
+final class MenuSpring {
+
+    private float mStiffness = 500f;
+    private float mDampingRatio = 0.65f;
+    private float mValueThreshold = 0.002f;
+
+    private int mCount;
+    private float[] mPositions = new float[0];
+    private float[] mVelocities = new float[0];
+    private float mTarget;
+    private boolean mRunning;
+
+    void setStiffness(float stiffness) {
+        mStiffness = stiffness;
+    }
+
+    void setDampingRatio(float dampingRatio) {
+        mDampingRatio = dampingRatio;
+    }
+
+    /**
+     * Sets how close to the target, in progress units, an item has to be to count as settled.
+     * Pass roughly half a pixel divided by the longest distance an item travels.
+     */
+    void setValueThreshold(float valueThreshold) {
+        mValueThreshold = valueThreshold;
+    }
+
+    /**
+     * Resizes the item set. Items that are added start settled at the current target.
+     */
+    void setItemCount(int count) {
+        if (mPositions.length < count) {
+            float[] positions = new float[count];
+            float[] velocities = new float[count];
+            System.arraycopy(mPositions, 0, positions, 0, mCount);
+            System.arraycopy(mVelocities, 0, velocities, 0, mCount);
+            mPositions = positions;
+            mVelocities = velocities;
+        }
+        for (int i = mCount; i < count; i++) {
+            mPositions[i] = mTarget;
+            mVelocities[i] = 0f;
+        }
+        mCount = count;
+    }
+
+    int getItemCount() {
+        return mCount;
+    }
+
+    /**
+     * Retargets every item, keeping their current positions and velocities.
+     */
+    void setTarget(float target) {
+        if (mTarget != target) {
+            mTarget = target;
+            mRunning = mCount > 0;
+        }
+    }
+
+    float getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * Jumps every item to the target without animating.
+     */
+    void snapToTarget() {
+        for (int i = 0; i < mCount; i++) {
+            mPositions[i] = mTarget;
+            mVelocities[i] = 0f;
+        }
+        mRunning = false;
+    }
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    float getPosition(int index) {
+        return mPositions[index];
+    }
+
+    /**
+     * Advances every item by {@code seconds}.
+     *
+     * @return whether any item is still moving
+     */
+    boolean step(float seconds) {
+        if (!mRunning) {
+            return false;
+        }
+
+        // x(t) = a * x0 + b * v0 and v(t) = c * x0 + d * v0 for the displacement x0 from the target
+        double omega = Math.sqrt(mStiffness);
+        double zeta = mDampingRatio;
+        double t = seconds;
+        double a, b, c, d;
+        if (zeta < 1) {
+            double dampedOmega = omega * Math.sqrt(1 - zeta * zeta);
+            double decay = Math.exp(-zeta * omega * t);
+            double cos = Math.cos(dampedOmega * t);
+            double sin = Math.sin(dampedOmega * t);
+            a = decay * (cos + zeta * omega / dampedOmega * sin);
+            b = decay * sin / dampedOmega;
+            c = -decay * omega * omega / dampedOmega * sin;
+            d = decay * (cos - zeta * omega / dampedOmega * sin);
+        } else if (zeta == 1) {
+            double decay = Math.exp(-omega * t);
+            a = decay * (1 + omega * t);
+            b = decay * t;
+            c = -decay * omega * omega * t;
+            d = decay * (1 - omega * t);
+        } else {
+            double root = omega * Math.sqrt(zeta * zeta - 1);
+            double r1 = -zeta * omega + root;
+            double r2 = -zeta * omega - root;
+            double e1 = Math.exp(r1 * t);
+            double e2 = Math.exp(r2 * t);
+            a = (r1 * e2 - r2 * e1) / (r1 - r2);
+            b = (e1 - e2) / (r1 - r2);
+            c = r1 * r2 * (e2 - e1) / (r1 - r2);
+            d = (r1 * e1 - r2 * e2) / (r1 - r2);
+        }
+
+        // Same heuristic as the support library's DynamicAnimation uses for its velocity threshold
+        float velocityThreshold = mValueThreshold * 62.5f;
+        boolean running = false;
+        for (int i = 0; i < mCount; i++) {
+            float displacement = mPositions[i] - mTarget;
+            float velocity = mVelocities[i];
+            displacement = (float) (a * displacement + b * velocity);
+            velocity = (float) (c * (mPositions[i] - mTarget) + d * velocity);
+
+            if (Math.abs(displacement) < mValueThreshold && Math.abs(velocity) < velocityThreshold) {
+                mPositions[i] = mTarget;
+                mVelocities[i] = 0f;
+            } else {
+                mPositions[i] = mTarget + displacement;
+                mVelocities[i] = velocity;
+                running = true;
+            }
+        }
+
+        mRunning = running;
+        return running;
+    }
+}
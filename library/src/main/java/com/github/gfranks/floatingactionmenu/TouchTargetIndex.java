@@ -0,0 +1,249 @@
+package com.github.gfranks.floatingactionmenu;
+
+/**
+ * Hit-testing for the enlarged touch areas of menu items. Areas live in a flat int buffer that is
+ * reused between layouts. Areas laid out along one axis without overlapping are found by binary
+ * search, anything else (arc layouts) goes through a small uniform grid.
+ */
+final class TouchTargetIndex {
+
+    // left, top, right, bottom
+    private static final int STRIDE = 4;
+    private static final int MAX_GRID_SIZE = 16;
+
+    private static final int MODE_EMPTY = 0;
+    private static final int MODE_VERTICAL = 1;
+    private static final int MODE_HORIZONTAL = 2;
+    private static final int MODE_GRID = 3;
+
+    private int mCount;
+    private int[] mAreas = new int[0];
+    private int[] mTargets = new int[0];
+    private int mMode = MODE_EMPTY;
+
+    private int mGridLeft;
+    private int mGridTop;
+    private int mGridColumns;
+    private int mGridRows;
+    private int mCellWidth;
+    private int mCellHeight;
+    private int[] mCellStarts = new int[0];
+    private int[] mCellItems = new int[0];
+
+    void clear() {
+        mCount = 0;
+        mMode = MODE_EMPTY;
+    }
+
+    /**
+     * Adds an area mapped to {@code target}. When areas overlap, the first one added wins.
+     */
+    void add(int left, int top, int right, int bottom, int target) {
+        if (mTargets.length == mCount) {
+            int capacity = Math.max(8, mCount * 2);
+            int[] areas = new int[capacity * STRIDE];
+            int[] targets = new int[capacity];
+            System.arraycopy(mAreas, 0, areas, 0, mCount * STRIDE);
+            System.arraycopy(mTargets, 0, targets, 0, mCount);
+            mAreas = areas;
+            mTargets = targets;
+        }
+
+        int offset = mCount * STRIDE;
+        mAreas[offset] = left;
+        mAreas[offset + 1] = top;
+        mAreas[offset + 2] = right;
+        mAreas[offset + 3] = bottom;
+        mTargets[mCount] = target;
+        mCount++;
+    }
+
+    /**
+     * Prepares the lookup structure, call once after the last {@link #add}.
+     */
+    void build() {
+        if (mCount == 0) {
+            mMode = MODE_EMPTY;
+        } else if (sortAlongAxis(1)) {
+            mMode = MODE_VERTICAL;
+        } else if (sortAlongAxis(0)) {
+            mMode = MODE_HORIZONTAL;
+        } else {
+            buildGrid();
+            mMode = MODE_GRID;
+        }
+    }
+
+    int size() {
+        return mCount;
+    }
+
+    /**
+     * @return the index of the area containing the point, or -1
+     */
+    int find(int x, int y) {
+        switch (mMode) {
+            case MODE_VERTICAL:
+                return search(1, y, x, y);
+            case MODE_HORIZONTAL:
+                return search(0, x, x, y);
+            case MODE_GRID:
+                return findInGrid(x, y);
+            default:
+                return -1;
+        }
+    }
+
+    int getTarget(int area) {
+        return mTargets[area];
+    }
+
+    /**
+     * Copies an area returned by {@link #find} into {@code out} as left, top, right, bottom.
+     */
+    void getArea(int area, int[] out) {
+        System.arraycopy(mAreas, area * STRIDE, out, 0, STRIDE);
+    }
+
+    private int search(int axis, int value, int x, int y) {
+        // Areas are ascending and disjoint along the axis, find the last one starting at or before value
+        int low = 0;
+        int high = mCount - 1;
+        int candidate = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (mAreas[mid * STRIDE + axis] <= value) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return candidate != -1 && contains(candidate, x, y) ? candidate : -1;
+    }
+
+    private int findInGrid(int x, int y) {
+        int column = (x - mGridLeft) / mCellWidth;
+        int row = (y - mGridTop) / mCellHeight;
+        if (x < mGridLeft || y < mGridTop || column >= mGridColumns || row >= mGridRows) {
+            return -1;
+        }
+
+        int cell = row * mGridColumns + column;
+        for (int i = mCellStarts[cell], end = mCellStarts[cell + 1]; i < end; i++) {
+            int area = mCellItems[i];
+            if (contains(area, x, y)) {
+                return area;
+            }
+        }
+        return -1;
+    }
+
+    private boolean contains(int area, int x, int y) {
+        int offset = area * STRIDE;
+        return x >= mAreas[offset] && x < mAreas[offset + 2] && y >= mAreas[offset + 1] && y < mAreas[offset + 3];
+    }
+
+    /**
+     * Orders the areas ascending along the axis (0 for x, 1 for y) if they were added in either
+     * direction without overlapping, which is how the linear expand directions produce them.
+     */
+    private boolean sortAlongAxis(int axis) {
+        boolean ascending = true;
+        boolean descending = true;
+        for (int i = 1; i < mCount; i++) {
+            int previous = (i - 1) * STRIDE;
+            int current = i * STRIDE;
+            ascending &= mAreas[current + axis] >= mAreas[previous + axis + 2];
+            descending &= mAreas[previous + axis] >= mAreas[current + axis + 2];
+        }
+
+        if (ascending) {
+            return true;
+        } else if (!descending) {
+            return false;
+        }
+
+        for (int i = 0, j = mCount - 1; i < j; i++, j--) {
+            for (int k = 0; k < STRIDE; k++) {
+                int swap = mAreas[i * STRIDE + k];
+                mAreas[i * STRIDE + k] = mAreas[j * STRIDE + k];
+                mAreas[j * STRIDE + k] = swap;
+            }
+            int swap = mTargets[i];
+            mTargets[i] = mTargets[j];
+            mTargets[j] = swap;
+        }
+        return true;
+    }
+
+    private void buildGrid() {
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < mCount; i++) {
+            int offset = i * STRIDE;
+            left = Math.min(left, mAreas[offset]);
+            top = Math.min(top, mAreas[offset + 1]);
+            right = Math.max(right, mAreas[offset + 2]);
+            bottom = Math.max(bottom, mAreas[offset + 3]);
+        }
+
+        int size = Math.min(MAX_GRID_SIZE, (int) Math.ceil(Math.sqrt(mCount)));
+        mGridLeft = left;
+        mGridTop = top;
+        mGridColumns = size;
+        mGridRows = size;
+        mCellWidth = Math.max(1, (right - left + size - 1) / size);
+        mCellHeight = Math.max(1, (bottom - top + size - 1) / size);
+
+        int cells = mGridColumns * mGridRows;
+        if (mCellStarts.length < cells + 1) {
+            mCellStarts = new int[cells + 1];
+        }
+        for (int i = 0; i <= cells; i++) {
+            mCellStarts[i] = 0;
+        }
+
+        // Count the areas per cell, turn the counts into start offsets, then fill in insertion
+        // order so overlapping areas keep their first-added priority
+        int items = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < mCount; i++) {
+                int offset = i * STRIDE;
+                int firstColumn = (mAreas[offset] - mGridLeft) / mCellWidth;
+                int lastColumn = Math.min(mGridColumns - 1, (mAreas[offset + 2] - 1 - mGridLeft) / mCellWidth);
+                int firstRow = (mAreas[offset + 1] - mGridTop) / mCellHeight;
+                int lastRow = Math.min(mGridRows - 1, (mAreas[offset + 3] - 1 - mGridTop) / mCellHeight);
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        int cell = row * mGridColumns + column;
+                        if (pass == 0) {
+                            mCellStarts[cell + 1]++;
+                            items++;
+                        } else {
+                            mCellItems[mCellStarts[cell]++] = i;
+                        }
+                    }
+                }
+            }
+
+            if (pass == 0) {
+                for (int cell = 0; cell < cells; cell++) {
+                    mCellStarts[cell + 1] += mCellStarts[cell];
+                }
+                if (mCellItems.length < items) {
+                    mCellItems = new int[items];
+                }
+            } else {
+                // Filling advanced every start to the next cell's start, shift them back
+                for (int cell = cells; cell > 0; cell--) {
+                    mCellStarts[cell] = mCellStarts[cell - 1];
+                }
+                mCellStarts[0] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.github.gfranks.floatingactionmenu;
+
+import android.content.Context;
+import android.support.design.widget.AppBarLayout;
+import android.support.design.widget.CoordinatorLayout;
+import android.view.Choreographer;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pass, animator, touch target and allocation budgets for a large menu, so regressions in the
+ * hot paths fail the build. Frames come from a fake {@link GFFloatingActionMenu.AnimationClock}.
+ * Allocations are compared with a reference loop doing the unavoidable view work for the same
+ * frames, which leaves Robolectric's own overhead out of the budget.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class GFFloatingActionMenuPerformanceTest {
+
+    private static final int ITEM_COUNT = 200;
+    private static final int TOGGLE_COUNT = 10000;
+    private static final int LAYOUT_COUNT = 1000;
+    private static final int SCROLL_FRAME_COUNT = 10000;
+    private static final long FRAME_NANOS = 16666667L;
+    private static final int SIZE = 1080;
+    private static final int APP_BAR_ID = 1;
+
+    private static final int ANIMATOR_BUDGET = 6;
+    private static final long ALLOCATION_BUDGET_PER_FRAME = 64;
+
+    private Context mContext;
+    private FakeClock mClock;
+
+    @Before
+    public void setUp() {
+        mContext = new ContextThemeWrapper(RuntimeEnvironment.application, R.style.Theme_AppCompat_Light);
+        mClock = new FakeClock();
+    }
+
+    @Test
+    public void relayoutsReuseTheMeasurePass() {
+        final GFFloatingActionMenu menu = createMenu();
+        measureAndLayout(menu);
+        int measurePasses = menu.getMeasurePassCount();
+        int layoutPasses = menu.getLayoutPassCount();
+
+        for (int i = 0; i < LAYOUT_COUNT; i++) {
+            // A parent pass with unchanged content; requestLayout() would invalidate the cache
+            menu.forceLayout();
+            measureAndLayout(menu);
+        }
+
+        assertEquals(measurePasses, menu.getMeasurePassCount());
+        assertEquals(layoutPasses + LAYOUT_COUNT, menu.getLayoutPassCount());
+        assertEquals(ITEM_COUNT, menu.getTouchTargetCount());
+
+        final View[] children = new View[menu.getChildCount()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = menu.getChildAt(i);
+        }
+        long allocated = allocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < LAYOUT_COUNT; i++) {
+                    menu.forceLayout();
+                    measureAndLayout(menu);
+                }
+            }
+        });
+        long reference = allocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < LAYOUT_COUNT; i++) {
+                    for (View child : children) {
+                        child.forceLayout();
+                        child.layout(child.getLeft(), child.getTop(), child.getRight(), child.getBottom());
+                    }
+                }
+            }
+        });
+        assertWithinBudget(allocated, reference, LAYOUT_COUNT);
+        assertEquals(ITEM_COUNT, menu.getTouchTargetCount());
+    }
+
+    @Test
+    public void togglesKeepAnimatorsAndPassesBounded() {
+        GFFloatingActionMenu menu = createMenu();
+        measureAndLayout(menu);
+
+        for (int i = 0; i < TOGGLE_COUNT; i++) {
+            menu.toggle();
+            if (menu.isLayoutRequested()) {
+                measureAndLayout(menu);
+            }
+        }
+
+        assertFalse(menu.isExpanded());
+        assertTrue(menu.getAnimatorCount() <= ANIMATOR_BUDGET);
+        // The first expand materializes the labels, nothing after it should measure again
+        assertTrue(menu.getMeasurePassCount() <= 2);
+        assertTrue(menu.getLayoutPassCount() <= 2);
+        assertEquals(ITEM_COUNT, menu.getTouchTargetCount());
+    }
+
+    @Test
+    public void springFramesStayWithinAllocationBudget() {
+        final GFFloatingActionMenu menu = createMenu();
+        menu.setAnimationBackend(GFFloatingActionMenu.ANIMATION_BACKEND_SPRING);
+        measureAndLayout(menu);
+        menu.expand();
+        measureAndLayout(menu);
+        while (mClock.hasFrameCallbacks()) {
+            mClock.frame();
+        }
+        int animators = menu.getAnimatorCount();
+        int measurePasses = menu.getMeasurePassCount();
+
+        // Retarget on every frame, the path a user toggling mid-flight takes
+        long allocated = allocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < TOGGLE_COUNT; i++) {
+                    menu.toggle();
+                    mClock.frame();
+                }
+            }
+        });
+
+        final View[] options = new View[menu.getMenuOptionCount()];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = menu.getChildAt(i);
+        }
+        long reference = allocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < TOGGLE_COUNT; i++) {
+                    float progress = (i & 1) == 0 ? 0.25f : 0.75f;
+                    for (View option : options) {
+                        option.setTranslationX(progress);
+                        option.setTranslationY(progress);
+                        option.setAlpha(progress);
+                    }
+                }
+            }
+        });
+
+        assertWithinBudget(allocated, reference, TOGGLE_COUNT);
+        assertEquals(animators, menu.getAnimatorCount());
+        assertEquals(measurePasses, menu.getMeasurePassCount());
+
+        while (mClock.hasFrameCallbacks()) {
+            mClock.frame();
+        }
+        assertTrue(menu.getState() == GFFloatingActionMenu.STATE_COLLAPSED
+                || menu.getState() == GFFloatingActionMenu.STATE_EXPANDED);
+    }
+
+    @Test
+    public void appBarScrollFramesOnlyActOnCrossings() {
+        final CoordinatorLayout parent = new CoordinatorLayout(mContext);
+        final AppBarLayout appBarLayout = new AppBarLayout(mContext);
+        appBarLayout.setId(APP_BAR_ID);
+        appBarLayout.setMinimumHeight(100);
+        parent.addView(appBarLayout, new CoordinatorLayout.LayoutParams(CoordinatorLayout.LayoutParams.MATCH_PARENT, 600));
+
+        final GFFloatingActionMenu menu = createMenu();
+        final GFFloatingActionMenu.Behavior behavior = new GFFloatingActionMenu.Behavior();
+        CoordinatorLayout.LayoutParams lp = new CoordinatorLayout.LayoutParams(
+                CoordinatorLayout.LayoutParams.WRAP_CONTENT, CoordinatorLayout.LayoutParams.WRAP_CONTENT);
+        lp.setAnchorId(appBarLayout.getId());
+        lp.setBehavior(behavior);
+        parent.addView(menu, lp);
+        measureAndLayout(parent);
+
+        // Hides below twice the minimum height and shows again once the app bar is 8dp past that
+        int hideBelow = 200;
+        int showFrom = (int) Math.ceil(hideBelow + 8 * mContext.getResources().getDisplayMetrics().density);
+        int[] bottoms = new int[SCROLL_FRAME_COUNT];
+        for (int i = 0; i < bottoms.length; i++) {
+            // Sweep the app bar fully in and out every 200 frames
+            int phase = i % 200;
+            bottoms[i] = phase < 100 ? 600 - phase * 6 : (phase - 100) * 6;
+        }
+
+        int transitions = 0;
+        boolean hidden = menu.isHidden();
+        for (int bottom : bottoms) {
+            scrollTo(appBarLayout, bottom);
+            behavior.onDependentViewChanged(parent, menu, appBarLayout);
+            if (menu.isHidden() != hidden) {
+                hidden = menu.isHidden();
+                transitions++;
+            }
+        }
+        assertEquals(SCROLL_FRAME_COUNT / 100, transitions);
+
+        // Jitter around the hide point changes the visibility once
+        transitions = 0;
+        scrollTo(appBarLayout, 600);
+        behavior.onDependentViewChanged(parent, menu, appBarLayout);
+        hidden = menu.isHidden();
+        for (int i = 0; i < SCROLL_FRAME_COUNT; i++) {
+            scrollTo(appBarLayout, (i & 1) == 0 ? hideBelow - 1 : showFrom - 1);
+            behavior.onDependentViewChanged(parent, menu, appBarLayout);
+            if (menu.isHidden() != hidden) {
+                hidden = menu.isHidden();
+                transitions++;
+            }
+        }
+        assertEquals(1, transitions);
+
+        // Frames that cross nothing neither allocate nor touch the menu
+        scrollTo(appBarLayout, 600);
+        behavior.onDependentViewChanged(parent, menu, appBarLayout);
+        measureAndLayout(parent);
+        final int measurePasses = menu.getMeasurePassCount();
+        long allocated = allocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < SCROLL_FRAME_COUNT; i++) {
+                    scrollTo(appBarLayout, 300 + i % 300);
+                    behavior.onDependentViewChanged(parent, menu, appBarLayout);
+                }
+            }
+        });
+        long reference = allocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < SCROLL_FRAME_COUNT; i++) {
+                    scrollTo(appBarLayout, 300 + i % 300);
+                }
+            }
+        });
+        assertWithinBudget(allocated, reference, SCROLL_FRAME_COUNT);
+        assertFalse(menu.isHidden());
+        assertFalse(menu.isLayoutRequested());
+        assertEquals(measurePasses, menu.getMeasurePassCount());
+    }
+
+    private GFFloatingActionMenu createMenu() {
+        GFFloatingActionMenu menu = new GFFloatingActionMenu(mContext);
+        menu.setAnimationClock(mClock);
+        menu.setLabelsStyle(R.style.TextAppearance_AppCompat_Small);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            GFFloatingActionButton button = new GFFloatingActionButton(mContext);
+            button.setTitle("Option " + i);
+            menu.addButton(button);
+        }
+        return menu;
+    }
+
+    private static void measureAndLayout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(SIZE * 100, View.MeasureSpec.AT_MOST));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+    private static void scrollTo(View appBarLayout, int bottom) {
+        appBarLayout.offsetTopAndBottom(bottom - appBarLayout.getBottom());
+    }
+
+    private static void assertWithinBudget(long allocated, long reference, int frames) {
+        long budget = reference + ALLOCATION_BUDGET_PER_FRAME * frames;
+        assertTrue("allocated " + allocated + " bytes, budget " + budget, allocated <= budget);
+    }
+
+    private static long allocatedBytes(Runnable runnable) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // Once to load classes and settle lazily created state, then measured
+        runnable.run();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        return threads.getThreadAllocatedBytes(threadId) - start;
+    }
+
+    private static class FakeClock implements GFFloatingActionMenu.AnimationClock {
+
+        private final Choreographer.FrameCallback[] mCallbacks = new Choreographer.FrameCallback[8];
+        private final Choreographer.FrameCallback[] mRunning = new Choreographer.FrameCallback[8];
+        private int mCallbackCount;
+        private long mNow;
+
+        @Override
+        public long nanoTime() {
+            return mNow;
+        }
+
+        @Override
+        public void postFrameCallback(Choreographer.FrameCallback callback) {
+            mCallbacks[mCallbackCount++] = callback;
+        }
+
+        @Override
+        public void removeFrameCallback(Choreographer.FrameCallback callback) {
+            for (int i = mCallbackCount - 1; i >= 0; i--) {
+                if (mCallbacks[i] == callback) {
+                    System.arraycopy(mCallbacks, i + 1, mCallbacks, i, mCallbackCount - i - 1);
+                    mCallbacks[--mCallbackCount] = null;
+                }
+            }
+        }
+
+        boolean hasFrameCallbacks() {
+            return mCallbackCount > 0;
+        }
+
+        void frame() {
+            mNow += FRAME_NANOS;
+            // Callbacks posted while running belong to the next frame, like Choreographer's
+            int count = mCallbackCount;
+            System.arraycopy(mCallbacks, 0, mRunning, 0, count);
+            for (int i = 0; i < count; i++) {
+                mCallbacks[i] = null;
+            }
+            mCallbackCount = 0;
+            for (int i = 0; i < count; i++) {
+                mRunning[i].doFrame(mNow);
+                mRunning[i] = null;
+            }
+        }
+    }
+}
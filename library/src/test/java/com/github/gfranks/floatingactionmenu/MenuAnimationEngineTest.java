@@ -0,0 +1,153 @@
+package com.github.gfranks.floatingactionmenu;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MenuAnimationEngineTest {
+
+    private static final float[][] COLLAPSED = {{0f, 300f}, {0f, 600f}, {0f, 900f}, {0f, 0f}};
+
+    @Test
+    public void expandEndpoints() {
+        MenuAnimationEngine engine = createEngine(0f);
+
+        engine.computeFrame(0f, true);
+        assertCollapsed(engine);
+
+        engine.computeFrame(1f, true);
+        assertExpanded(engine);
+    }
+
+    @Test
+    public void collapseEndpoints() {
+        MenuAnimationEngine engine = createEngine(0f);
+
+        engine.computeFrame(0f, false);
+        assertExpanded(engine);
+
+        engine.computeFrame(1f, false);
+        assertCollapsed(engine);
+    }
+
+    @Test
+    public void expandOvershootsAndAlphaStaysInRange() {
+        MenuAnimationEngine engine = createEngine(0f);
+
+        boolean overshot = false;
+        for (int frame = 0; frame <= 100; frame++) {
+            engine.computeFrame(frame / 100f, true);
+            // Past the expanded position means a translation of the opposite sign
+            overshot |= engine.getTranslationY(2) < 0f;
+            assertTrue(engine.getAlpha(2) >= 0f && engine.getAlpha(2) <= 1f);
+        }
+        assertTrue(overshot);
+    }
+
+    @Test
+    public void curvesMatchPlatformInterpolators() {
+        MenuAnimationEngine engine = createEngine(0f);
+        float t = 0.3f;
+
+        engine.computeFrame(t, true);
+        // OvershootInterpolator(2f) and DecelerateInterpolator()
+        float u = t - 1f;
+        float overshoot = u * u * (3f * u + 2f) + 1f;
+        assertEquals(900f * (1f - overshoot), engine.getTranslationY(2), 0.001f);
+        assertEquals(1f - (1f - t) * (1f - t), engine.getAlpha(2), 0.0001f);
+
+        engine.computeFrame(t, false);
+        // DecelerateInterpolator(3f)
+        float decelerate = (float) (1.0 - Math.pow(1.0 - t, 6.0));
+        assertEquals(900f * decelerate, engine.getTranslationY(2), 0.001f);
+        assertEquals(1f - decelerate, engine.getAlpha(2), 0.0001f);
+    }
+
+    @Test
+    public void staggerExpandsNearestFirst() {
+        MenuAnimationEngine engine = createEngine(0.5f);
+
+        assertEquals(0.5f, engine.getItemSpan(), 0f);
+        assertEquals(0.5f / 3f, engine.getItemStart(0, true), 0.0001f);
+        assertEquals(0.5f, engine.getItemStart(2, true), 0.0001f);
+        assertEquals(0.5f, engine.getItemStart(0, false) + engine.getItemStart(0, true), 0.0001f);
+        assertEquals(0f, engine.getItemStart(2, false), 0.0001f);
+
+        engine.computeFrame(0.4f, true);
+        assertTrue(engine.getAlpha(0) > 0f);
+        assertEquals(0f, engine.getAlpha(2), 0f);
+        assertEquals(900f, engine.getTranslationY(2), 0f);
+
+        engine.computeFrame(0.4f, false);
+        assertTrue(engine.getAlpha(2) < 1f);
+        assertTrue(engine.getAlpha(0) > engine.getAlpha(2));
+    }
+
+    @Test
+    public void staggerKeepsEndpoints() {
+        MenuAnimationEngine engine = createEngine(0.8f);
+
+        engine.computeFrame(0f, true);
+        assertCollapsed(engine);
+        engine.computeFrame(1f, true);
+        assertExpanded(engine);
+        engine.computeFrame(1f, false);
+        assertCollapsed(engine);
+    }
+
+    @Test
+    public void fullStaggerJumpsEachItem() {
+        MenuAnimationEngine engine = createEngine(1f);
+
+        engine.computeFrame(1f, true);
+        assertExpanded(engine);
+    }
+
+    @Test
+    public void staggerIsClamped() {
+        MenuAnimationEngine engine = new MenuAnimationEngine();
+        engine.setStagger(2f);
+        assertEquals(1f, engine.getStagger(), 0f);
+        engine.setStagger(-1f);
+        assertEquals(0f, engine.getStagger(), 0f);
+    }
+
+    @Test
+    public void relayoutMidFlightMovesTowardsNewPosition() {
+        MenuAnimationEngine engine = createEngine(0.5f);
+        engine.computeFrame(0.3f, true);
+
+        engine.setCollapsedTranslation(2, 0f, 1200f);
+        engine.computeFrame(0f, true);
+
+        assertEquals(1200f, engine.getTranslationY(2), 0f);
+        assertEquals(1f / 4f * 0.5f, engine.getItemStart(0, true), 0.0001f);
+    }
+
+    private static MenuAnimationEngine createEngine(float stagger) {
+        MenuAnimationEngine engine = new MenuAnimationEngine();
+        engine.setStagger(stagger);
+        engine.setItemCount(COLLAPSED.length);
+        for (int i = 0; i < COLLAPSED.length; i++) {
+            engine.setCollapsedTranslation(i, COLLAPSED[i][0], COLLAPSED[i][1]);
+        }
+        return engine;
+    }
+
+    private static void assertCollapsed(MenuAnimationEngine engine) {
+        for (int i = 0; i < COLLAPSED.length; i++) {
+            assertEquals(COLLAPSED[i][0], engine.getTranslationX(i), 0.0001f);
+            assertEquals(COLLAPSED[i][1], engine.getTranslationY(i), 0.0001f);
+            assertEquals(0f, engine.getAlpha(i), 0.0001f);
+        }
+    }
+
+    private static void assertExpanded(MenuAnimationEngine engine) {
+        for (int i = 0; i < COLLAPSED.length; i++) {
+            assertEquals(0f, engine.getTranslationX(i), 0.0001f);
+            assertEquals(0f, engine.getTranslationY(i), 0.0001f);
+            assertEquals(1f, engine.getAlpha(i), 0.0001f);
+        }
+    }
+}
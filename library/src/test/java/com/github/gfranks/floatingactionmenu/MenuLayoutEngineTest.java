@@ -0,0 +1,414 @@
+package com.github.gfranks.floatingactionmenu;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link MenuLayoutEngine} against the measure and layout math GFFloatingActionMenu ran
+ * inline before it was extracted, which {@link BaselineLayout} keeps verbatim apart from reading
+ * sizes from arrays instead of views.
+ */
+public class MenuLayoutEngineTest {
+
+    private static final int BUTTON_SIZE = 186;
+    private static final int MINI_BUTTON_SIZE = 138;
+    private static final int LABEL_WIDTH = 240;
+    private static final int LABEL_HEIGHT = 60;
+    private static final int BUTTON_SPACING = 45;
+    private static final int LABELS_MARGIN = 24;
+
+    private static final int[] DIRECTIONS = {
+            MenuLayoutEngine.EXPAND_UP, MenuLayoutEngine.EXPAND_DOWN,
+            MenuLayoutEngine.EXPAND_LEFT, MenuLayoutEngine.EXPAND_RIGHT,
+            MenuLayoutEngine.EXPAND_ARC_LEFT_UP, MenuLayoutEngine.EXPAND_ARC_LEFT_DOWN,
+            MenuLayoutEngine.EXPAND_ARC_RIGHT_UP, MenuLayoutEngine.EXPAND_ARC_RIGHT_DOWN
+    };
+
+    @Test
+    public void matchesBaselineForEveryDirection() {
+        int[] itemCounts = {1, 2, 3, 7, 25};
+        for (int direction : DIRECTIONS) {
+            for (int labelsPosition : new int[]{MenuLayoutEngine.LABELS_LEFT, MenuLayoutEngine.LABELS_RIGHT}) {
+                for (int itemCount : itemCounts) {
+                    Items items = new Items(itemCount);
+                    assertMatchesBaseline(items, direction, labelsPosition,
+                            "direction " + direction + ", labels " + labelsPosition + ", items " + itemCount);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void skipsGoneItems() {
+        for (int direction : DIRECTIONS) {
+            Items items = new Items(6);
+            items.flags[1] |= MenuLayoutEngine.FLAG_GONE;
+            items.flags[4] |= MenuLayoutEngine.FLAG_GONE;
+            assertMatchesBaseline(items, direction, MenuLayoutEngine.LABELS_LEFT, "direction " + direction);
+        }
+    }
+
+    @Test
+    public void recomputesArcWhenItemCountChanges() {
+        MenuLayoutEngine engine = layOut(new Items(5), MenuLayoutEngine.EXPAND_ARC_LEFT_UP);
+        Items more = new Items(9);
+        engine.setItems(more.count, more.widths, more.heights, more.flags, more.labelWidths, more.labelHeights);
+        engine.measure();
+        layOut(engine);
+
+        assertSameLayout(layOut(new Items(9), MenuLayoutEngine.EXPAND_ARC_LEFT_UP), engine, 9);
+    }
+
+    @Test
+    public void recomputesArcWhenDirectionChanges() {
+        Items items = new Items(5);
+        MenuLayoutEngine engine = layOut(items, MenuLayoutEngine.EXPAND_ARC_LEFT_UP);
+        engine.setExpandDirection(MenuLayoutEngine.EXPAND_ARC_RIGHT_DOWN);
+        engine.measure();
+        layOut(engine);
+
+        assertSameLayout(layOut(items, MenuLayoutEngine.EXPAND_ARC_RIGHT_DOWN), engine, 5);
+    }
+
+    @Test
+    public void recomputesArcWhenButtonSizeChanges() {
+        Items items = new Items(5);
+        MenuLayoutEngine engine = layOut(items, MenuLayoutEngine.EXPAND_ARC_RIGHT_UP);
+        // The engine reads the arrays it was given, so resizing them in place is what the menu does
+        for (int i = 0; i < items.count; i++) {
+            items.widths[i] += 30;
+            items.heights[i] += 20;
+        }
+        engine.measure();
+        layOut(engine);
+
+        assertSameLayout(layOut(items, MenuLayoutEngine.EXPAND_ARC_RIGHT_UP), engine, 5);
+    }
+
+    private static void assertMatchesBaseline(Items items, int direction, int labelsPosition, String message) {
+        MenuLayoutEngine engine = createEngine(items, direction, labelsPosition);
+        engine.measure();
+        layOut(engine);
+
+        BaselineLayout baseline = new BaselineLayout(items, direction, labelsPosition);
+        baseline.measure();
+        baseline.layout(0, 0, baseline.measuredWidth, baseline.measuredHeight);
+
+        assertEquals(message, baseline.measuredWidth, engine.getMeasuredWidth());
+        assertEquals(message, baseline.measuredHeight, engine.getMeasuredHeight());
+        assertArrayEquals(message, baseline.menuButtonBounds, engine.getMenuButtonBounds());
+        for (int i = 0; i < items.count; i++) {
+            if (engine.isSkipped(i)) {
+                continue;
+            }
+
+            assertArrayEquals(message + ", item " + i, slice(baseline.childBounds, i), slice(engine.getChildBounds(), i));
+            assertEquals(message + ", item " + i, baseline.collapsedTranslations[i * 2],
+                    engine.getCollapsedTranslations()[i * MenuLayoutEngine.TRANSLATION_STRIDE], 0f);
+            assertEquals(message + ", item " + i, baseline.collapsedTranslations[i * 2 + 1],
+                    engine.getCollapsedTranslations()[i * MenuLayoutEngine.TRANSLATION_STRIDE + 1], 0f);
+            if (engine.expandsVertically() && (items.flags[i] & MenuLayoutEngine.FLAG_HAS_LABEL) != 0) {
+                assertArrayEquals(message + ", label " + i, slice(baseline.labelBounds, i), slice(engine.getLabelBounds(), i));
+            }
+        }
+    }
+
+    private static void assertSameLayout(MenuLayoutEngine expected, MenuLayoutEngine actual, int count) {
+        assertArrayEquals(expected.getMenuButtonBounds(), actual.getMenuButtonBounds());
+        for (int i = 0; i < count; i++) {
+            if (expected.isSkipped(i)) {
+                continue;
+            }
+            assertArrayEquals("item " + i, slice(expected.getChildBounds(), i), slice(actual.getChildBounds(), i));
+        }
+    }
+
+    private static MenuLayoutEngine layOut(Items items, int direction) {
+        MenuLayoutEngine engine = createEngine(items, direction, MenuLayoutEngine.LABELS_LEFT);
+        engine.measure();
+        layOut(engine);
+        return engine;
+    }
+
+    private static void layOut(MenuLayoutEngine engine) {
+        engine.layout(0, 0, engine.getMeasuredWidth(), engine.getMeasuredHeight(), BUTTON_SIZE, BUTTON_SIZE, 0);
+    }
+
+    private static MenuLayoutEngine createEngine(Items items, int direction, int labelsPosition) {
+        MenuLayoutEngine engine = new MenuLayoutEngine();
+        engine.setExpandDirection(direction);
+        engine.setLabelsPosition(labelsPosition);
+        engine.setButtonSpacing(BUTTON_SPACING);
+        engine.setLabelsMargin(LABELS_MARGIN);
+        engine.setItems(items.count, items.widths, items.heights, items.flags, items.labelWidths, items.labelHeights);
+        return engine;
+    }
+
+    private static int[] slice(int[] bounds, int index) {
+        int[] slice = new int[MenuLayoutEngine.BOUNDS_STRIDE];
+        System.arraycopy(bounds, index * MenuLayoutEngine.BOUNDS_STRIDE, slice, 0, MenuLayoutEngine.BOUNDS_STRIDE);
+        return slice;
+    }
+
+    /**
+     * {@code itemCount} options followed by the menu button, every other option mini and labeled.
+     */
+    private static class Items {
+
+        final int count;
+        final int[] widths;
+        final int[] heights;
+        final int[] flags;
+        final int[] labelWidths;
+        final int[] labelHeights;
+
+        Items(int itemCount) {
+            count = itemCount + 1;
+            widths = new int[count];
+            heights = new int[count];
+            flags = new int[count];
+            labelWidths = new int[count];
+            labelHeights = new int[count];
+            for (int i = 0; i < itemCount; i++) {
+                boolean mini = i % 2 == 1;
+                widths[i] = mini ? MINI_BUTTON_SIZE : BUTTON_SIZE;
+                heights[i] = widths[i];
+                if (mini) {
+                    flags[i] = MenuLayoutEngine.FLAG_HAS_LABEL;
+                    labelWidths[i] = LABEL_WIDTH + i;
+                    labelHeights[i] = LABEL_HEIGHT;
+                }
+            }
+            widths[itemCount] = BUTTON_SIZE;
+            heights[itemCount] = BUTTON_SIZE;
+            flags[itemCount] = MenuLayoutEngine.FLAG_MENU_BUTTON;
+        }
+    }
+
+    /**
+     * GFFloatingActionMenu's onMeasure and onLayout as they were before MenuLayoutEngine, without
+     * an AppBarLayout anchor.
+     */
+    private static class BaselineLayout {
+
+        private final Items mItems;
+        private final int mExpandDirection;
+        private final int mLabelsPosition;
+        private int mMaxButtonWidth;
+        private int mMaxButtonHeight;
+
+        int measuredWidth;
+        int measuredHeight;
+        final int[] menuButtonBounds = new int[4];
+        final int[] childBounds;
+        final int[] labelBounds;
+        final float[] collapsedTranslations;
+
+        BaselineLayout(Items items, int expandDirection, int labelsPosition) {
+            mItems = items;
+            mExpandDirection = expandDirection;
+            mLabelsPosition = labelsPosition;
+            childBounds = new int[items.count * 4];
+            labelBounds = new int[items.count * 4];
+            collapsedTranslations = new float[items.count * 2];
+        }
+
+        void measure() {
+            int width = 0;
+            int height = 0;
+            mMaxButtonWidth = 0;
+            mMaxButtonHeight = 0;
+            int maxLabelWidth = 0;
+            int buttonsCount = mItems.count;
+
+            for (int i = 0; i < buttonsCount; i++) {
+                if ((mItems.flags[i] & MenuLayoutEngine.FLAG_GONE) != 0) {
+                    continue;
+                }
+
+                switch (mExpandDirection) {
+                    case MenuLayoutEngine.EXPAND_UP:
+                    case MenuLayoutEngine.EXPAND_DOWN:
+                        mMaxButtonWidth = Math.max(mMaxButtonWidth, mItems.widths[i]);
+                        height += mItems.heights[i];
+                        break;
+                    case MenuLayoutEngine.EXPAND_LEFT:
+                    case MenuLayoutEngine.EXPAND_RIGHT:
+                        width += mItems.widths[i];
+                        mMaxButtonHeight = Math.max(mMaxButtonHeight, mItems.heights[i]);
+                        break;
+                    default:
+                        mMaxButtonWidth = Math.max(mMaxButtonWidth, mItems.widths[i]);
+                        height += mItems.heights[i];
+                        width += mItems.widths[i];
+                        mMaxButtonHeight = Math.max(mMaxButtonHeight, mItems.heights[i]);
+                        break;
+                }
+
+                if (expandsVertically() && (mItems.flags[i] & MenuLayoutEngine.FLAG_HAS_LABEL) != 0) {
+                    maxLabelWidth = Math.max(maxLabelWidth, mItems.labelWidths[i]);
+                }
+            }
+
+            if (mExpandDirection == MenuLayoutEngine.EXPAND_LEFT || mExpandDirection == MenuLayoutEngine.EXPAND_RIGHT) {
+                height = mMaxButtonHeight;
+            } else if (expandsVertically()) {
+                width = mMaxButtonWidth + (maxLabelWidth > 0 ? maxLabelWidth + LABELS_MARGIN : 0);
+            } else {
+                height = mMaxButtonHeight;
+                width = mMaxButtonWidth;
+            }
+
+            switch (mExpandDirection) {
+                case MenuLayoutEngine.EXPAND_UP:
+                case MenuLayoutEngine.EXPAND_DOWN:
+                    height += BUTTON_SPACING * (buttonsCount - 1);
+                    height = height * 12 / 10;
+                    break;
+                case MenuLayoutEngine.EXPAND_LEFT:
+                case MenuLayoutEngine.EXPAND_RIGHT:
+                    width += BUTTON_SPACING * (buttonsCount - 1);
+                    width = width * 12 / 10;
+                    break;
+                default:
+                    height += BUTTON_SPACING * buttonsCount * 2;
+                    height = height * 12 / 10;
+                    width += BUTTON_SPACING * buttonsCount * 2;
+                    width = width * 12 / 10;
+                    break;
+            }
+
+            measuredWidth = width;
+            measuredHeight = height;
+        }
+
+        void layout(int l, int t, int r, int b) {
+            int buttonsCount = mItems.count;
+            int menuButtonWidth = mItems.widths[buttonsCount - 1];
+            int menuButtonHeight = mItems.heights[buttonsCount - 1];
+
+            switch (mExpandDirection) {
+                case MenuLayoutEngine.EXPAND_UP:
+                case MenuLayoutEngine.EXPAND_DOWN: {
+                    boolean expandUp = mExpandDirection == MenuLayoutEngine.EXPAND_UP;
+                    int addButtonY = expandUp ? b - t - menuButtonHeight : t;
+                    int buttonsHorizontalCenter = mLabelsPosition == MenuLayoutEngine.LABELS_LEFT
+                            ? r - l - mMaxButtonWidth / 2
+                            : mMaxButtonWidth / 2;
+                    int addButtonLeft = (buttonsHorizontalCenter - menuButtonWidth / 2);
+                    set(menuButtonBounds, 0, addButtonLeft, addButtonY, addButtonLeft + menuButtonWidth, addButtonY + menuButtonHeight);
+
+                    int labelsOffset = mMaxButtonWidth / 2 + LABELS_MARGIN;
+                    int labelsXNearButton = mLabelsPosition == MenuLayoutEngine.LABELS_LEFT
+                            ? buttonsHorizontalCenter - labelsOffset
+                            : buttonsHorizontalCenter + labelsOffset;
+                    int nextY = expandUp ? addButtonY - BUTTON_SPACING : addButtonY + menuButtonHeight + BUTTON_SPACING;
+
+                    for (int i = buttonsCount - 1; i >= 0; i--) {
+                        if (isSkipped(i)) continue;
+
+                        int childX = (buttonsHorizontalCenter - mItems.widths[i] / 2);
+                        int childY = expandUp ? nextY - mItems.heights[i] : nextY;
+                        set(childBounds, i, childX, childY, childX + mItems.widths[i], childY + mItems.heights[i]);
+                        collapsedTranslations[i * 2 + 1] = addButtonY - childY;
+
+                        if ((mItems.flags[i] & MenuLayoutEngine.FLAG_HAS_LABEL) != 0) {
+                            int labelXAwayFromButton = mLabelsPosition == MenuLayoutEngine.LABELS_LEFT
+                                    ? labelsXNearButton - mItems.labelWidths[i]
+                                    : labelsXNearButton + mItems.labelWidths[i];
+                            int labelLeft;
+                            int labelRight;
+                            if (mLabelsPosition == MenuLayoutEngine.LABELS_LEFT) {
+                                labelLeft = labelXAwayFromButton;
+                                labelRight = labelsXNearButton;
+                            } else {
+                                labelLeft = labelsXNearButton;
+                                labelRight = labelXAwayFromButton;
+                            }
+                            int labelTop = childY + (mItems.heights[i] - mItems.labelHeights[i]) / 2;
+                            set(labelBounds, i, labelLeft, labelTop, labelRight, labelTop + mItems.labelHeights[i]);
+                        }
+
+                        nextY = expandUp ? childY - BUTTON_SPACING : childY + mItems.heights[i] + BUTTON_SPACING;
+                    }
+                    break;
+                }
+                case MenuLayoutEngine.EXPAND_LEFT:
+                case MenuLayoutEngine.EXPAND_RIGHT: {
+                    boolean expandLeft = mExpandDirection == MenuLayoutEngine.EXPAND_LEFT;
+                    int addButtonX = expandLeft ? r - l - menuButtonWidth : l;
+                    int addButtonTop = b - t - mMaxButtonHeight + (mMaxButtonHeight - menuButtonHeight) / 2;
+                    set(menuButtonBounds, 0, addButtonX, addButtonTop, addButtonX + menuButtonWidth, addButtonTop + menuButtonHeight);
+
+                    int nextX = expandLeft ? addButtonX - BUTTON_SPACING : addButtonX + menuButtonWidth + BUTTON_SPACING;
+                    for (int i = buttonsCount - 1; i >= 0; i--) {
+                        if (isSkipped(i)) continue;
+
+                        int childX = expandLeft ? nextX - mItems.widths[i] : nextX;
+                        int childY = addButtonTop + (menuButtonHeight - mItems.heights[i]) / 2;
+                        set(childBounds, i, childX, childY, childX + mItems.widths[i], childY + mItems.heights[i]);
+                        collapsedTranslations[i * 2] = addButtonX - childX;
+
+                        nextX = expandLeft ? childX - BUTTON_SPACING : childX + mItems.widths[i] + BUTTON_SPACING;
+                    }
+                    break;
+                }
+                default: {
+                    boolean expandLeft = mExpandDirection == MenuLayoutEngine.EXPAND_ARC_LEFT_UP
+                            || mExpandDirection == MenuLayoutEngine.EXPAND_ARC_LEFT_DOWN;
+                    boolean expandUp = mExpandDirection == MenuLayoutEngine.EXPAND_ARC_LEFT_UP
+                            || mExpandDirection == MenuLayoutEngine.EXPAND_ARC_RIGHT_UP;
+                    int addButtonX = expandLeft ? r - l - menuButtonWidth : l;
+                    int addButtonY = expandUp ? b - t - menuButtonHeight : t;
+                    set(menuButtonBounds, 0, addButtonX, addButtonY, addButtonX + menuButtonWidth, addButtonY + menuButtonHeight);
+
+                    double eachAngle;
+                    if (buttonsCount == 1) {
+                        eachAngle = 0;
+                    } else {
+                        int angle = expandLeft ? 90 : -90;
+                        eachAngle = (double) angle / (buttonsCount - 2);
+                    }
+
+                    for (int i = 0; i < buttonsCount; i++) {
+                        if (isSkipped(i)) continue;
+
+                        double totalAngleForChild = eachAngle * (i);
+                        int leftPoint = (int) (((mMaxButtonWidth * buttonsCount) * Math.cos(Math.toRadians(totalAngleForChild))) / 2);
+                        int topPoint = (int) (((mMaxButtonHeight * buttonsCount) * Math.sin(Math.toRadians(totalAngleForChild))) / 2);
+                        int left;
+                        int top;
+                        if (expandLeft) {
+                            left = addButtonX - leftPoint;
+                            top = expandUp ? addButtonY - topPoint : addButtonY + topPoint;
+                        } else {
+                            left = addButtonX + leftPoint;
+                            top = expandUp ? addButtonY + topPoint : addButtonY - topPoint;
+                        }
+                        set(childBounds, i, left, top, left + mItems.widths[i], top + mItems.heights[i]);
+                        collapsedTranslations[i * 2] = addButtonX - left;
+                        collapsedTranslations[i * 2 + 1] = addButtonY - top;
+                    }
+                    break;
+                }
+            }
+        }
+
+        private boolean expandsVertically() {
+            return mExpandDirection == MenuLayoutEngine.EXPAND_UP || mExpandDirection == MenuLayoutEngine.EXPAND_DOWN;
+        }
+
+        private boolean isSkipped(int index) {
+            return (mItems.flags[index] & (MenuLayoutEngine.FLAG_GONE | MenuLayoutEngine.FLAG_MENU_BUTTON)) != 0;
+        }
+
+        private static void set(int[] bounds, int index, int left, int top, int right, int bottom) {
+            bounds[index * 4] = left;
+            bounds[index * 4 + 1] = top;
+            bounds[index * 4 + 2] = right;
+            bounds[index * 4 + 3] = bottom;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.gfranks.floatingactionmenu;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MenuSpringTest {
+
+    private static final float FRAME = 1f / 60f;
+
+    @Test
+    public void settlesAtTarget() {
+        MenuSpring spring = new MenuSpring();
+        spring.setItemCount(3);
+        spring.setTarget(1f);
+        assertTrue(spring.isRunning());
+
+        int frames = stepUntilSettled(spring);
+
+        assertFalse(spring.isRunning());
+        assertTrue("took " + frames + " frames", frames < 120);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1f, spring.getPosition(i), 0f);
+        }
+    }
+
+    @Test
+    public void underdampedSpringOvershoots() {
+        MenuSpring spring = new MenuSpring();
+        spring.setItemCount(1);
+        spring.setTarget(1f);
+
+        float max = 0f;
+        while (spring.step(FRAME)) {
+            max = Math.max(max, spring.getPosition(0));
+        }
+        assertTrue(max > 1f);
+    }
+
+    @Test
+    public void criticallyAndOverdampedSpringsDoNotOvershoot() {
+        for (float dampingRatio : new float[]{1f, 2f}) {
+            MenuSpring spring = new MenuSpring();
+            spring.setDampingRatio(dampingRatio);
+            spring.setItemCount(1);
+            spring.setTarget(1f);
+
+            while (spring.step(FRAME)) {
+                assertTrue(spring.getPosition(0) <= 1f);
+            }
+            assertEquals(1f, spring.getPosition(0), 0f);
+        }
+    }
+
+    @Test
+    public void retargetKeepsPositionAndVelocity() {
+        MenuSpring spring = new MenuSpring();
+        spring.setItemCount(1);
+        spring.setTarget(1f);
+        for (int i = 0; i < 4; i++) {
+            spring.step(FRAME);
+        }
+        float position = spring.getPosition(0);
+        assertTrue(position > 0f && position < 1f);
+
+        spring.setTarget(0f);
+        assertEquals(position, spring.getPosition(0), 0f);
+
+        // Still moving towards 1 for a moment, the velocity carried over
+        spring.step(FRAME / 4);
+        assertTrue(spring.getPosition(0) > position);
+
+        stepUntilSettled(spring);
+        assertEquals(0f, spring.getPosition(0), 0f);
+    }
+
+    @Test
+    public void stepIsStableForLongFrames() {
+        MenuSpring spring = new MenuSpring();
+        spring.setItemCount(1);
+        spring.setTarget(1f);
+
+        spring.step(5f);
+
+        assertFalse(spring.isRunning());
+        assertEquals(1f, spring.getPosition(0), 0f);
+    }
+
+    @Test
+    public void addedItemsStartAtTarget() {
+        MenuSpring spring = new MenuSpring();
+        spring.setItemCount(1);
+        spring.setTarget(1f);
+        spring.step(FRAME);
+
+        spring.setItemCount(2);
+
+        assertEquals(1f, spring.getPosition(1), 0f);
+    }
+
+    @Test
+    public void snapToTarget() {
+        MenuSpring spring = new MenuSpring();
+        spring.setItemCount(2);
+        spring.setTarget(1f);
+        spring.step(FRAME);
+
+        spring.snapToTarget();
+
+        assertFalse(spring.isRunning());
+        assertFalse(spring.step(FRAME));
+        assertEquals(1f, spring.getPosition(0), 0f);
+        assertEquals(1f, spring.getPosition(1), 0f);
+    }
+
+    private static int stepUntilSettled(MenuSpring spring) {
+        int frames = 0;
+        while (spring.step(FRAME)) {
+            frames++;
+            if (frames > 10000) {
+                throw new AssertionError("spring never settled");
+            }
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.gfranks.floatingactionmenu;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link TouchTargetIndex#find} with a linear scan in insertion order, which is what
+ * the per-item TouchDelegate list it replaced did.
+ */
+public class TouchTargetIndexTest {
+
+    private static final int SIZE = 120;
+    private static final int SPACING = 30;
+
+    @Test
+    public void verticalAreasAddedBottomUp() {
+        TouchTargetIndex index = new TouchTargetIndex();
+        int[][] areas = new int[40][];
+        for (int i = 0; i < areas.length; i++) {
+            // Expanding up adds from the menu button outwards, so tops decrease
+            int top = 10000 - i * (SIZE + SPACING);
+            areas[i] = new int[]{20, top, 20 + SIZE + i % 3 * 40, top + SIZE + SPACING};
+        }
+
+        build(index, areas);
+        assertMatchesLinearScan(index, areas);
+    }
+
+    @Test
+    public void verticalAreasAddedTopDown() {
+        TouchTargetIndex index = new TouchTargetIndex();
+        int[][] areas = new int[40][];
+        for (int i = 0; i < areas.length; i++) {
+            int top = i * (SIZE + SPACING);
+            areas[i] = new int[]{0, top, SIZE, top + SIZE};
+        }
+
+        build(index, areas);
+        assertMatchesLinearScan(index, areas);
+    }
+
+    @Test
+    public void horizontalAreas() {
+        for (boolean leftwards : new boolean[]{true, false}) {
+            TouchTargetIndex index = new TouchTargetIndex();
+            int[][] areas = new int[40][];
+            for (int i = 0; i < areas.length; i++) {
+                // Same top and bottom for every area, so only the x axis separates them
+                int left = leftwards ? 10000 - i * (SIZE + SPACING) : i * (SIZE + SPACING);
+                areas[i] = new int[]{left, 0, left + SIZE, SIZE};
+            }
+
+            build(index, areas);
+            assertMatchesLinearScan(index, areas);
+        }
+    }
+
+    @Test
+    public void arcAreasUseTheGrid() {
+        TouchTargetIndex index = new TouchTargetIndex();
+        int count = 30;
+        int[][] areas = new int[count][];
+        for (int i = 0; i < count; i++) {
+            double angle = Math.toRadians(90.0 * i / (count - 1));
+            int left = (int) (2000 * Math.cos(angle));
+            int top = (int) (2000 * Math.sin(angle));
+            areas[i] = new int[]{left, top, left + SIZE, top + SIZE};
+        }
+
+        build(index, areas);
+        assertMatchesLinearScan(index, areas);
+    }
+
+    @Test
+    public void overlappingAreasFirstAddedWins() {
+        TouchTargetIndex index = new TouchTargetIndex();
+        Random random = new Random(7);
+        int[][] areas = new int[60][];
+        for (int i = 0; i < areas.length; i++) {
+            int left = random.nextInt(800);
+            int top = random.nextInt(800);
+            areas[i] = new int[]{left, top, left + 50 + random.nextInt(200), top + 50 + random.nextInt(200)};
+        }
+
+        build(index, areas);
+        assertMatchesLinearScan(index, areas);
+    }
+
+    @Test
+    public void rebuildAfterClear() {
+        TouchTargetIndex index = new TouchTargetIndex();
+        build(index, new int[][]{{0, 0, 100, 100}, {0, 200, 100, 300}});
+        index.clear();
+        assertEquals(-1, index.find(50, 50));
+
+        int[][] areas = {{500, 500, 600, 600}};
+        build(index, areas);
+        assertMatchesLinearScan(index, areas);
+    }
+
+    private static void build(TouchTargetIndex index, int[][] areas) {
+        for (int i = 0; i < areas.length; i++) {
+            index.add(areas[i][0], areas[i][1], areas[i][2], areas[i][3], i);
+        }
+        index.build();
+    }
+
+    private static void assertMatchesLinearScan(TouchTargetIndex index, int[][] areas) {
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int[] area : areas) {
+            left = Math.min(left, area[0]);
+            top = Math.min(top, area[1]);
+            right = Math.max(right, area[2]);
+            bottom = Math.max(bottom, area[3]);
+        }
+
+        // Step through the whole extent plus a margin, hitting every area edge on the way
+        for (int y = top - 20; y <= bottom + 20; y += 7) {
+            for (int x = left - 20; x <= right + 20; x += 7) {
+                int area = index.find(x, y);
+                assertEquals("(" + x + ", " + y + ")", linearScan(areas, x, y), area == -1 ? -1 : index.getTarget(area));
+            }
+        }
+        for (int i = 0; i < areas.length; i++) {
+            int[] area = areas[i];
+            for (int[] point : new int[][]{{area[0], area[1]}, {area[2] - 1, area[3] - 1}, {area[2], area[3]}}) {
+                int found = index.find(point[0], point[1]);
+                assertEquals("area " + i, linearScan(areas, point[0], point[1]), found == -1 ? -1 : index.getTarget(found));
+            }
+        }
+    }
+
+    private static int linearScan(int[][] areas, int x, int y) {
+        for (int i = 0; i < areas.length; i++) {
+            if (x >= areas[i][0] && x < areas[i][2] && y >= areas[i][1] && y < areas[i][3]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}